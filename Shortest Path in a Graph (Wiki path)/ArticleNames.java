@@ -0,0 +1,173 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable two-way mapping between article names and vertex numbers: a base built when
+ * the graph was loaded or last compacted, plus the articles added or removed since.
+ * Changes go through an Editor, which copies the set of changes only when articles are
+ * added or removed, so link updates leave the names shared.
+ */
+final class ArticleNames {
+    // names of the base vertices; removed articles have no name
+    private final NameStore base;
+    // changes since the base: a removed name maps to -1, a removed vertex to null
+    private final Map<String,Integer> changedVertices;
+    private final Map<Integer,String> changedNames;
+    private final int numVertices;
+
+    private ArticleNames(NameStore base, Map<String,Integer> changedVertices, Map<Integer,String> changedNames, int numVertices){
+        this.base = base;
+        this.changedVertices = changedVertices;
+        this.changedNames = changedNames;
+        this.numVertices = numVertices;
+    }
+
+    /**
+     * Returns the names in base, with no changes.
+     */
+    static ArticleNames of(NameStore base){
+        return new ArticleNames(base, new HashMap<String,Integer>(), new HashMap<Integer,String>(), base.size());
+    }
+
+    /**
+     * Returns the number of vertex numbers in use, including ones whose article was removed.
+     */
+    int numVertices(){
+        return numVertices;
+    }
+
+    /**
+     * Returns the vertex number of the article called name, or -1 if there is none.
+     */
+    int getVertex(String name){
+        if (!changedVertices.isEmpty()){
+            Integer changed = changedVertices.get(name);
+            if (changed != null){
+                return changed.intValue();
+            }
+        }
+        return base.getVertex(name);
+    }
+
+    /**
+     * Returns the name of the article with vertex number vertex, or null if there is none.
+     */
+    String getName(int vertex){
+        if (!changedNames.isEmpty() && changedNames.containsKey(vertex)){
+            return changedNames.get(vertex);
+        }
+        return base.getName(vertex);
+    }
+
+    /**
+     * Returns true if there are changes that are not folded into the base yet.
+     */
+    boolean hasChanges(){
+        return !changedNames.isEmpty();
+    }
+
+    /**
+     * Returns the same names with every change folded into a new base.
+     */
+    ArticleNames compact(){
+        if (!hasChanges()){
+            return this;
+        }
+        // copies unchanged names byte for byte, without decoding them
+        NameStore.Builder builder = new NameStore.Builder();
+        for (int vertexNum = 0; vertexNum < numVertices; vertexNum++){
+            if (changedNames.containsKey(vertexNum)){
+                builder.add(changedNames.get(vertexNum));
+            } else {
+                builder.add(base, vertexNum);
+            }
+        }
+        return of(builder.build());
+    }
+
+    /**
+     * Returns the names in a single NameStore; hasChanges() must be false.
+     */
+    NameStore getBase(){
+        if (hasChanges()){
+            throw new IllegalStateException("Names have changes that are not compacted");
+        }
+        return base;
+    }
+
+    /**
+     * Returns an Editor that starts from these names.
+     */
+    Editor edit(){
+        return new Editor();
+    }
+
+    /**
+     * Collects added and removed articles and turns them into new ArticleNames.
+     */
+    final class Editor {
+        // shared with the names being edited until the first change, so updates that only
+        // touch links copy nothing
+        private Map<String,Integer> editedVertices;
+        private Map<Integer,String> editedNames;
+        private boolean copied;
+        private int editedNumVertices;
+
+        private Editor(){
+            editedVertices = changedVertices;
+            editedNames = changedNames;
+            editedNumVertices = numVertices;
+        }
+
+        private void copyOnWrite(){
+            if (!copied){
+                editedVertices = new HashMap<String,Integer>(editedVertices);
+                editedNames = new HashMap<Integer,String>(editedNames);
+                copied = true;
+            }
+        }
+
+        /**
+         * Returns the vertex number of the article called name, or -1 if there is none.
+         */
+        int getVertex(String name){
+            Integer changed = editedVertices.get(name);
+            if (changed != null){
+                return changed.intValue();
+            }
+            return base.getVertex(name);
+        }
+
+        /**
+         * Names vertex, which must be the next unused vertex number.
+         */
+        void add(int vertex, String name){
+            if (vertex != editedNumVertices){
+                throw new IllegalStateException("Expected vertex " + editedNumVertices + " but got " + vertex);
+            }
+            copyOnWrite();
+            editedVertices.put(name, Integer.valueOf(vertex));
+            editedNames.put(Integer.valueOf(vertex), name);
+            editedNumVertices++;
+        }
+
+        /**
+         * Removes the name of vertex. The vertex number is never reused.
+         */
+        void remove(int vertex, String name){
+            copyOnWrite();
+            editedVertices.put(name, Integer.valueOf(-1));
+            editedNames.put(Integer.valueOf(vertex), null);
+        }
+
+        /**
+         * Returns new ArticleNames with every change made through this editor.
+         */
+        ArticleNames freeze(){
+            if (!copied){
+                return ArticleNames.this;
+            }
+            return new ArticleNames(base, editedVertices, editedNames, editedNumVertices);
+        }
+    }
+}
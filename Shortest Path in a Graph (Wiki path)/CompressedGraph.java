@@ -0,0 +1,409 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable directed graph whose neighbor lists are sorted and gap-encoded with
+ * variable-length integers, in the style of WebGraph. Neighbors of a vertex tend to have
+ * nearby numbers, especially after a VertexOrder renumbering, so most gaps fit in one
+ * byte and the graph takes a byte or two per edge instead of the four of a CsrGraph.
+ * Lists are decoded into the cursor's scratch array when a search asks for them.
+ *
+ * Each vertex's list is its degree, then its first neighbor as a signed difference from
+ * the vertex itself, then the differences between consecutive neighbors. Every number is
+ * written 7 bits per byte, low bits first, with the top bit set on all bytes but the last.
+ * Lists are packed into pages of up to 1GB, so the graph is not limited to one array;
+ * a list never straddles two pages, so each vertex only needs its start within its page.
+ * The pages and list starts are either on the heap or mapped from a GraphSnapshot file.
+ * EdgeFileLoader.loadCompressed() builds a CompressedGraph straight from an edge file,
+ * through a Builder, without building a CsrGraph first.
+ *
+ * Unlike CsrGraph, neighbors come back in increasing order rather than in the order the
+ * edges were added, so searches find paths of the same length but may pick different
+ * ones when several shortest paths exist.
+ */
+public final class CompressedGraph implements IntGraph {
+    // pages are at most this long, so every page fits in one array or one mapping
+    static final int PAGE_BYTES = 1 << 30;
+
+    // encoded lists, one page after another
+    private final byte[][] pages;
+    // the same pages when they are mapped from a file; then pages and starts are null
+    private final ByteBuffer[] mappedPages;
+    // firstVertex[p] is the first vertex whose list is on page p
+    private final int[] firstVertex;
+    // starts[v] is where the list of v starts in its page
+    private final int[] starts;
+    private final IntBuffer mappedStarts;
+    private final long numEdges;
+
+    private CompressedGraph(byte[][] pages, int[] firstVertex, int[] starts, long numEdges){
+        this.pages = pages;
+        this.mappedPages = null;
+        this.firstVertex = firstVertex;
+        this.starts = starts;
+        this.mappedStarts = null;
+        this.numEdges = numEdges;
+    }
+
+    /**
+     * Constructs a CompressedGraph that reads its pages and list starts from a mapped file.
+     * @param pages encoded lists, each page holding whole lists
+     * @param firstVertex first vertex whose list is on each page
+     * @param starts where each vertex's list starts in its page
+     * @param numEdges number of edges
+     */
+    CompressedGraph(ByteBuffer[] pages, int[] firstVertex, IntBuffer starts, long numEdges){
+        this.pages = null;
+        this.mappedPages = pages;
+        this.firstVertex = firstVertex;
+        this.starts = null;
+        this.mappedStarts = starts;
+        this.numEdges = numEdges;
+    }
+
+    /**
+     * Returns a CompressedGraph with the same vertices and edges as graph.
+     */
+    public static CompressedGraph copyOf(IntGraph graph){
+        int numVertices = graph.numVertices();
+        Builder builder = new Builder(numVertices);
+        int[] neighbors = new int[16];
+        NeighborCursor cursor = new NeighborCursor();
+        for (int v = 0; v < numVertices; v++){
+            int degree = graph.getDegree(v);
+            if (degree > neighbors.length){
+                neighbors = new int[Math.max(degree, neighbors.length * 2)];
+            }
+            graph.getNeighbors(v, cursor);
+            for (int i = 0; cursor.hasNext(); i++){
+                neighbors[i] = cursor.next();
+            }
+            builder.add(neighbors, 0, degree);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the same graph with vertex v renumbered newId[v]. Lists are re-encoded one at
+     * a time, so only the new graph is built next to this one.
+     * @param newId new number of every vertex; a permutation of 0 to numVertices() - 1
+     */
+    public CompressedGraph relabel(int[] newId){
+        int numVertices = numVertices();
+        int[] oldId = new int[numVertices];
+        for (int v = 0; v < numVertices; v++){
+            oldId[newId[v]] = v;
+        }
+        Builder builder = new Builder(numVertices);
+        int[] neighbors = new int[16];
+        NeighborCursor cursor = new NeighborCursor();
+        for (int u = 0; u < numVertices; u++){
+            int v = oldId[u];
+            int degree = getDegree(v);
+            if (degree > neighbors.length){
+                neighbors = new int[Math.max(degree, neighbors.length * 2)];
+            }
+            getNeighbors(v, cursor);
+            for (int i = 0; cursor.hasNext(); i++){
+                neighbors[i] = newId[cursor.next()];
+            }
+            builder.add(neighbors, 0, degree);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Encodes the lists of vertices 0, 1, 2, ... in order, as they are handed over, and packs
+     * them into a CompressedGraph. Only the encoded lists are kept, so a graph can be built
+     * without ever holding all of its edges as ints. The bytes of the current page are
+     * collected in small blocks and copied into a page of the exact size once it is full,
+     * so a page is never grown by copying.
+     */
+    static final class Builder {
+        private static final int BLOCK_BYTES = 1 << 20;
+
+        private final int[] starts;
+        private final List<byte[]> pages = new ArrayList<byte[]>();
+        private int[] firstVertex = new int[] {0};
+        // full blocks of the current page, then the block being filled
+        private final List<byte[]> blocks = new ArrayList<byte[]>();
+        private byte[] block = new byte[BLOCK_BYTES];
+        private int blockUsed;
+        // bytes in the current page
+        private int used;
+        // a list takes at most 5 bytes per number: the degree, then one per neighbor
+        private byte[] encoded = new byte[5 * 17];
+        private int numVertices;
+        private long numEdges;
+
+        /**
+         * Constructs a Builder for a graph of numVertices vertices.
+         */
+        Builder(int numVertices){
+            this.starts = new int[numVertices];
+        }
+
+        /**
+         * Adds the list of the next vertex: neighbors[start] to neighbors[start + degree - 1],
+         * which are sorted in place.
+         * @return the vertex number
+         */
+        int add(int[] neighbors, int start, int degree){
+            int v = numVertices;
+            if (5L * (degree + 1) > encoded.length){
+                encoded = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(5L * (degree + 1), encoded.length * 2L))];
+            }
+            Arrays.sort(neighbors, start, start + degree);
+            int length = encode(v, neighbors, start, degree, encoded);
+            if (length > PAGE_BYTES){
+                throw new IllegalArgumentException("Neighbors of vertex " + v + " take more than one page: " + length + " bytes");
+            }
+            if (used + length > PAGE_BYTES){
+                // starts a new page rather than splitting the list
+                finishPage();
+                firstVertex = Arrays.copyOf(firstVertex, pages.size() + 1);
+                firstVertex[pages.size()] = v;
+            }
+            starts[v] = used;
+            for (int copied = 0; copied < length; ){
+                if (blockUsed == BLOCK_BYTES){
+                    blocks.add(block);
+                    block = new byte[BLOCK_BYTES];
+                    blockUsed = 0;
+                }
+                int part = Math.min(length - copied, BLOCK_BYTES - blockUsed);
+                System.arraycopy(encoded, copied, block, blockUsed, part);
+                blockUsed += part;
+                copied += part;
+            }
+            used += length;
+            numEdges += degree;
+            return numVertices++;
+        }
+
+        /**
+         * Copies the blocks of the current page into one array and starts an empty page.
+         */
+        private void finishPage(){
+            byte[] page = new byte[used];
+            int position = 0;
+            for (int b = 0; b < blocks.size(); b++){
+                System.arraycopy(blocks.get(b), 0, page, position, BLOCK_BYTES);
+                position += BLOCK_BYTES;
+                // lets each block be collected as soon as it is copied
+                blocks.set(b, null);
+            }
+            System.arraycopy(block, 0, page, position, blockUsed);
+            blocks.clear();
+            blockUsed = 0;
+            used = 0;
+            pages.add(page);
+        }
+
+        /**
+         * Packs the lists added so far into a CompressedGraph. Every vertex must have been added.
+         */
+        CompressedGraph build(){
+            if (numVertices != starts.length){
+                throw new IllegalStateException("Only " + numVertices + " of " + starts.length + " vertices were added");
+            }
+            finishPage();
+            block = null;
+            return new CompressedGraph(pages.toArray(new byte[0][]), firstVertex, starts, numEdges);
+        }
+    }
+
+    /**
+     * Writes the list of vertex, whose sorted neighbors are neighbors[start] to
+     * neighbors[start + degree - 1], into out.
+     * @return the number of bytes written
+     */
+    private static int encode(int vertex, int[] neighbors, int start, int degree, byte[] out){
+        int length = writeVarInt(degree, out, 0);
+        if (degree == 0){
+            return length;
+        }
+        // the first neighbor may come before the vertex, so its gap is zigzag-encoded to stay small
+        int first = neighbors[start] - vertex;
+        length = writeVarInt((first << 1) ^ (first >> 31), out, length);
+        for (int i = start + 1; i < start + degree; i++){
+            length = writeVarInt(neighbors[i] - neighbors[i - 1], out, length);
+        }
+        return length;
+    }
+
+    /**
+     * Writes value, read as unsigned, into out at position.
+     * @return the position after the last byte written
+     */
+    private static int writeVarInt(int value, byte[] out, int position){
+        while ((value & ~0x7f) != 0){
+            out[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Returns the number of the page holding the list of vertex.
+     */
+    private int pageOf(int vertex){
+        if (firstVertex.length == 1){
+            return 0;
+        }
+        int page = Arrays.binarySearch(firstVertex, vertex);
+        // between two first vertices, binarySearch gives -(index of the later one) - 1
+        return page >= 0 ? page : -page - 2;
+    }
+
+    public int numVertices(){
+        return starts != null ? starts.length : mappedStarts.limit();
+    }
+
+    public long numEdges(){
+        return numEdges;
+    }
+
+    public int getDegree(int vertex){
+        int degree = 0;
+        int shift = 0;
+        byte b;
+        if (pages != null){
+            byte[] page = pages[pageOf(vertex)];
+            int index = starts[vertex];
+            do {
+                b = page[index++];
+                degree |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+        } else {
+            ByteBuffer page = mappedPages[pageOf(vertex)];
+            int index = mappedStarts.get(vertex);
+            do {
+                b = page.get(index++);
+                degree |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+        }
+        return degree;
+    }
+
+    public void getNeighbors(int vertex, NeighborCursor cursor){
+        if (pages == null){
+            getMappedNeighbors(vertex, cursor);
+            return;
+        }
+        byte[] page = pages[pageOf(vertex)];
+        int index = starts[vertex];
+        // every number is decoded inline; this loop is the inner loop of every search
+        int degree = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = page[index++];
+            degree |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        int[] scratch = cursor.getScratch(degree);
+        int previous = vertex;
+        for (int i = 0; i < degree; i++){
+            int gap = 0;
+            shift = 0;
+            do {
+                b = page[index++];
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (i == 0){
+                gap = (gap >>> 1) ^ -(gap & 1);
+            }
+            previous += gap;
+            scratch[i] = previous;
+        }
+        cursor.reset(scratch, 0, degree);
+    }
+
+    /**
+     * getNeighbors() for a graph mapped from a file: the same decoding, reading the page
+     * through its buffer.
+     */
+    private void getMappedNeighbors(int vertex, NeighborCursor cursor){
+        ByteBuffer page = mappedPages[pageOf(vertex)];
+        int index = mappedStarts.get(vertex);
+        int degree = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = page.get(index++);
+            degree |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        int[] scratch = cursor.getScratch(degree);
+        int previous = vertex;
+        for (int i = 0; i < degree; i++){
+            int gap = 0;
+            shift = 0;
+            do {
+                b = page.get(index++);
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (i == 0){
+                gap = (gap >>> 1) ^ -(gap & 1);
+            }
+            previous += gap;
+            scratch[i] = previous;
+        }
+        cursor.reset(scratch, 0, degree);
+    }
+
+    /**
+     * Returns the number of bytes the graph takes, counting the list positions.
+     */
+    public long sizeInBytes(){
+        long bytes = 4L * numVertices() + 4L * firstVertex.length;
+        for (int p = 0; p < firstVertex.length; p++){
+            bytes += pageLength(p);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of pages.
+     */
+    int numPages(){
+        return firstVertex.length;
+    }
+
+    /**
+     * Returns the first vertex whose list is on page.
+     */
+    int firstVertex(int page){
+        return firstVertex[page];
+    }
+
+    /**
+     * Returns the number of bytes of page.
+     */
+    int pageLength(int page){
+        return pages != null ? pages[page].length : mappedPages[page].limit();
+    }
+
+    /**
+     * Returns a read-only view of the bytes of page.
+     */
+    ByteBuffer pageView(int page){
+        return pages != null ? ByteBuffer.wrap(pages[page]).asReadOnlyBuffer() : mappedPages[page].duplicate();
+    }
+
+    /**
+     * Returns a read-only view of where each vertex's list starts in its page.
+     */
+    IntBuffer startsView(){
+        return starts != null ? IntBuffer.wrap(starts).asReadOnlyBuffer() : mappedStarts.duplicate();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Immutable directed graph stored in compressed sparse row form. The neighbors
+ * of vertex v are targets[offsets[v]] to targets[offsets[v + 1] - 1], so the
+ * whole graph is two primitive arrays instead of one object per vertex and edge.
+ *
+ * The two arrays are either on the heap or mapped from a GraphSnapshot file. A mapped
+ * graph is ready as soon as the file is mapped; its neighbor lists are copied into the
+ * cursor's scratch array as searches ask for them.
+ */
+public final class CsrGraph implements IntGraph {
+    // offsets[v] is the index in targets of the first neighbor of v; has numVertices + 1 entries
+    private final int[] offsets;
+    // neighbors of every vertex, one after another
+    private final int[] targets;
+    // the same two arrays when they are mapped from a file; then offsets and targets are null
+    private final MappedIntArray mappedOffsets;
+    private final MappedIntArray mappedTargets;
+
+    /**
+     * Constructs a CsrGraph directly from its arrays. The arrays are not copied.
+     * @param offsets start of each vertex's neighbors, plus one final entry equal to targets.length
+     * @param targets neighbors of every vertex, grouped by source vertex
+     */
+    CsrGraph(int[] offsets, int[] targets){
+        this.offsets = offsets;
+        this.targets = targets;
+        this.mappedOffsets = null;
+        this.mappedTargets = null;
+    }
+
+    /**
+     * Constructs a CsrGraph that reads its arrays from a mapped file.
+     * @param offsets start of each vertex's neighbors, plus one final entry equal to targets.length()
+     * @param targets neighbors of every vertex, grouped by source vertex
+     */
+    CsrGraph(MappedIntArray offsets, MappedIntArray targets){
+        this.offsets = null;
+        this.targets = null;
+        this.mappedOffsets = offsets;
+        this.mappedTargets = targets;
+    }
+
+    /**
+     * Returns a CsrGraph with the same vertices and edges as graph, neighbors in the same order.
+     */
+    public static CsrGraph copyOf(IntGraph graph){
+        int numVertices = graph.numVertices();
+        long numEdges = graph.numEdges();
+        if (numEdges > Integer.MAX_VALUE - 8){
+            throw new IllegalArgumentException("Graph has more edges than fit in one array: " + numEdges);
+        }
+        int[] offsets = new int[numVertices + 1];
+        for (int v = 0; v < numVertices; v++){
+            offsets[v + 1] = offsets[v] + graph.getDegree(v);
+        }
+        int[] targets = new int[(int) numEdges];
+        NeighborCursor cursor = new NeighborCursor();
+        for (int v = 0; v < numVertices; v++){
+            graph.getNeighbors(v, cursor);
+            for (int i = offsets[v]; cursor.hasNext(); i++){
+                targets[i] = cursor.next();
+            }
+        }
+        return new CsrGraph(offsets, targets);
+    }
+
+    /**
+     * Returns a new graph with every edge reversed. The in-neighbors of each vertex
+     * are listed in increasing order of their source vertex.
+     */
+    public CsrGraph reverse(){
+        if (targets == null){
+            return copyOf(this).reverse();
+        }
+        int numVertices = numVertices();
+        int[] reverseOffsets = new int[numVertices + 1];
+        for (int i = 0; i < targets.length; i++){
+            reverseOffsets[targets[i] + 1]++;
+        }
+        for (int v = 0; v < numVertices; v++){
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+        int[] next = new int[numVertices];
+        System.arraycopy(reverseOffsets, 0, next, 0, numVertices);
+        int[] reverseTargets = new int[targets.length];
+        for (int v = 0; v < numVertices; v++){
+            for (int i = offsets[v]; i < offsets[v + 1]; i++){
+                reverseTargets[next[targets[i]]++] = v;
+            }
+        }
+        return new CsrGraph(reverseOffsets, reverseTargets);
+    }
+
+    /**
+     * Returns the same graph with vertex v renumbered newId[v]. Each vertex keeps its
+     * neighbors in the same order, so a search visits the same vertices in the same order,
+     * only under their new numbers.
+     * @param newId new number of every vertex; a permutation of 0 to numVertices() - 1
+     */
+    public CsrGraph relabel(int[] newId){
+        if (targets == null){
+            return copyOf(this).relabel(newId);
+        }
+        int numVertices = numVertices();
+        int[] newOffsets = new int[numVertices + 1];
+        for (int v = 0; v < numVertices; v++){
+            newOffsets[newId[v] + 1] = getDegree(v);
+        }
+        for (int v = 0; v < numVertices; v++){
+            newOffsets[v + 1] += newOffsets[v];
+        }
+        int[] newTargets = new int[targets.length];
+        for (int v = 0; v < numVertices; v++){
+            int next = newOffsets[newId[v]];
+            for (int i = offsets[v]; i < offsets[v + 1]; i++){
+                newTargets[next++] = newId[targets[i]];
+            }
+        }
+        return new CsrGraph(newOffsets, newTargets);
+    }
+
+    public int numVertices(){
+        return offsets != null ? offsets.length - 1 : (int) (mappedOffsets.length() - 1);
+    }
+
+    public long numEdges(){
+        return targets != null ? targets.length : mappedTargets.length();
+    }
+
+    public int getDegree(int vertex){
+        if (offsets != null){
+            return offsets[vertex + 1] - offsets[vertex];
+        }
+        return mappedOffsets.get(vertex + 1) - mappedOffsets.get(vertex);
+    }
+
+    public void getNeighbors(int vertex, NeighborCursor cursor){
+        if (targets != null){
+            // the cursor reads straight out of targets, no copying
+            cursor.reset(targets, offsets[vertex], offsets[vertex + 1]);
+            return;
+        }
+        int start = mappedOffsets.get(vertex);
+        int degree = mappedOffsets.get(vertex + 1) - start;
+        int[] scratch = cursor.getScratch(degree);
+        mappedTargets.get(start, scratch, 0, degree);
+        cursor.reset(scratch, 0, degree);
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Breadth-first search that switches between top-down and bottom-up steps.
+ * A top-down step scans the out-links of every frontier vertex. Once the frontier
+ * holds more edges than the unvisited part of the graph, which happens a few hops
+ * out from a hub article, a bottom-up step is cheaper: every unvisited vertex scans
+ * its in-links and stops at the first one that comes from the frontier. The search
+ * switches back to top-down when the frontier shrinks again. Levels are kept in a
+ * queue, and visited marks in a bitset; a bottom-up step also puts its frontier in a
+ * bitset while it runs.
+ *
+ * Based on Beamer, Asanovic and Patterson, "Direction-Optimizing Breadth-First Search" (2012).
+ */
+final class DirectionOptimizingBfs {
+    // go bottom-up when frontier edges exceed unvisited edges / ALPHA
+    private static final int ALPHA = 14;
+    // go back top-down when the frontier has fewer than numVertices / BETA vertices
+    private static final int BETA = 24;
+
+    // largest vertex count the bitsets have room for
+    private final int capacity;
+    // size of the graph being searched
+    private int numVertices;
+    // number of 64-bit words of each bitset in use
+    private int numWords;
+
+    // vertices reached by the current search
+    private final long[] visited;
+    // words of visited with a bit set, so the next search clears only those
+    private final int[] dirtyWords;
+    private int numDirtyWords;
+    // the current level during a bottom-up step; all clear otherwise
+    private final long[] frontier;
+    private final NeighborCursor cursor;
+    // the buffers each search's work is recorded in, whose queue holds the reached vertices
+    private final SearchBuffers owner;
+
+    /**
+     * Constructs a search for graphs with up to capacity vertices. An instance keeps
+     * scratch bitsets, so it must only be used by one thread at a time.
+     * @param owner buffers whose queue each search fills and whose work counters it adds to
+     */
+    DirectionOptimizingBfs(int capacity, SearchBuffers owner){
+        this.capacity = capacity;
+        this.owner = owner;
+        int words = (capacity + 63) >>> 6;
+        this.visited = new long[words];
+        this.dirtyWords = new int[words];
+        this.frontier = new long[words];
+        this.cursor = new NeighborCursor();
+    }
+
+    /**
+     * Searches from source. Afterwards the reached vertices are owner.queue[0] to
+     * queue[reached - 1], in order of distance from source, and isReached() tells whether a
+     * vertex was reached. For every reached vertex v, parent[v] is the vertex v was reached
+     * from (source for itself) and distance[v] its number of edges from source; the entries
+     * of other vertices are left as they were. Only the vertices and bitset words the
+     * search touches are reset, so a search that stops early at a nearby target is cheap
+     * on any size of graph. If target is not -1, the search stops after the level that
+     * reaches target.
+     * @param graph graph to search, with no more vertices than this instance was built for
+     * @param reverseGraph the same edges reversed
+     * @param source starting vertex
+     * @param target vertex to stop at, or -1 to reach everything reachable
+     * @param parent filled in with each reached vertex's parent; at least numVertices long
+     * @param distance filled in with each reached vertex's distance; at least numVertices long
+     * @return the number of vertices reached
+     */
+    int search(IntGraph graph, IntGraph reverseGraph, int source, int target, int[] parent, int[] distance){
+        if (graph.numVertices() > capacity){
+            throw new IllegalArgumentException("Search sized for " + capacity + " vertices, graph has " + graph.numVertices());
+        }
+        numVertices = graph.numVertices();
+        numWords = (numVertices + 63) >>> 6;
+        for (int i = 0; i < numDirtyWords; i++){
+            visited[dirtyWords[i]] = 0;
+        }
+        numDirtyWords = 0;
+
+        // the levels follow each other in the queue: queue[head] to queue[tail - 1] is the frontier
+        int[] queue = owner.queue;
+        int head = 0;
+        int tail = 0;
+        visit(source);
+        parent[source] = source;
+        distance[source] = 0;
+        queue[tail++] = source;
+        long frontierEdges = graph.getDegree(source);
+        long unvisitedEdges = graph.numEdges() - frontierEdges;
+        boolean bottomUp = false;
+        int level = 0;
+        // frontier vertices expanded top-down, or unvisited vertices checked bottom-up
+        long verticesExamined = 0;
+        // edges looked at, in either direction
+        long edgesExamined = 0;
+        int peakFrontier = 1;
+
+        while (head < tail && (target < 0 || !isSet(visited, target))){
+            int frontierSize = tail - head;
+            if (!bottomUp && frontierEdges > unvisitedEdges / ALPHA){
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < numVertices / BETA){
+                bottomUp = false;
+            }
+            level++;
+            int levelEnd = tail;
+            long nextEdges = 0;
+            if (bottomUp){
+                for (int i = head; i < levelEnd; i++){
+                    set(frontier, queue[i]);
+                }
+                // every unvisited vertex looks for a parent among its in-links
+                for (int word = 0; word < numWords; word++){
+                    // vertices reached in this step are marked at once, but the word was read before
+                    long unvisited = ~visited[word];
+                    while (unvisited != 0){
+                        int vertex = (word << 6) + Long.numberOfTrailingZeros(unvisited);
+                        unvisited &= unvisited - 1;
+                        if (vertex >= numVertices){
+                            break;
+                        }
+                        verticesExamined++;
+                        reverseGraph.getNeighbors(vertex, cursor);
+                        while (cursor.hasNext()){
+                            int predecessor = cursor.next();
+                            edgesExamined++;
+                            if (isSet(frontier, predecessor)){
+                                visit(vertex);
+                                parent[vertex] = predecessor;
+                                distance[vertex] = level;
+                                queue[tail++] = vertex;
+                                nextEdges += graph.getDegree(vertex);
+                                break;
+                            }
+                        }
+                    }
+                }
+                for (int i = head; i < levelEnd; i++){
+                    clear(frontier, queue[i]);
+                }
+            } else {
+                // every frontier vertex claims its unvisited out-links
+                for (int i = head; i < levelEnd; i++){
+                    int vertex = queue[i];
+                    verticesExamined++;
+                    graph.getNeighbors(vertex, cursor);
+                    while (cursor.hasNext()){
+                        int neighbor = cursor.next();
+                        edgesExamined++;
+                        if (!isSet(visited, neighbor)){
+                            visit(neighbor);
+                            parent[neighbor] = vertex;
+                            distance[neighbor] = level;
+                            queue[tail++] = neighbor;
+                            nextEdges += graph.getDegree(neighbor);
+                        }
+                    }
+                }
+            }
+            head = levelEnd;
+            frontierEdges = nextEdges;
+            unvisitedEdges -= nextEdges;
+            peakFrontier = Math.max(peakFrontier, tail - head);
+        }
+        owner.recordWork(verticesExamined, edgesExamined, peakFrontier);
+        return tail;
+    }
+
+    /**
+     * Returns true if the last search reached vertex.
+     */
+    boolean isReached(int vertex){
+        return isSet(visited, vertex);
+    }
+
+    /**
+     * Marks vertex visited, remembering its word for the next search to clear.
+     */
+    private void visit(int vertex){
+        int word = vertex >>> 6;
+        if (visited[word] == 0){
+            dirtyWords[numDirtyWords++] = word;
+        }
+        visited[word] |= 1L << vertex;
+    }
+
+    private static boolean isSet(long[] bits, int index){
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index){
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clear(long[] bits, int index){
+        bits[index >>> 6] &= ~(1L << index);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Result of PathFinder.estimateEccentricity(): the eccentricity of each sampled article,
+ * meaning the shortest path length to the farthest article it can reach, and a diameter
+ * estimate taken as the largest of them. Since only some articles are sampled, the
+ * estimate is a lower bound on the true diameter.
+ */
+public class EccentricityEstimate {
+    private final String[] articles;
+    private final int[] eccentricities;
+    private final int[] reachable;
+
+    /**
+     * Constructs an EccentricityEstimate. The arrays are not copied.
+     * @param articles names of the sampled articles
+     * @param eccentricities eccentricity of each sampled article
+     * @param reachable number of articles each sampled article can reach, itself included
+     */
+    EccentricityEstimate(String[] articles, int[] eccentricities, int[] reachable){
+        this.articles = articles;
+        this.eccentricities = eccentricities;
+        this.reachable = reachable;
+    }
+
+    /**
+     * Returns the number of sampled articles.
+     */
+    public int size(){
+        return articles.length;
+    }
+
+    /**
+     * Returns the name of sampled article i.
+     */
+    public String getArticle(int i){
+        return articles[i];
+    }
+
+    /**
+     * Returns the eccentricity of sampled article i.
+     */
+    public int getEccentricity(int i){
+        return eccentricities[i];
+    }
+
+    /**
+     * Returns how many articles sampled article i can reach, itself included.
+     */
+    public int getReachableCount(int i){
+        return reachable[i];
+    }
+
+    /**
+     * Returns the largest sampled eccentricity, a lower bound on the diameter.
+     */
+    public int getDiameterLowerBound(){
+        int diameter = 0;
+        for (int eccentricity : eccentricities){
+            diameter = Math.max(diameter, eccentricity);
+        }
+        return diameter;
+    }
+
+    /**
+     * Returns the mean of the sampled eccentricities, or 0 if nothing was sampled.
+     */
+    public double getMeanEccentricity(){
+        if (eccentricities.length == 0){
+            return 0;
+        }
+        long total = 0;
+        for (int eccentricity : eccentricities){
+            total += eccentricity;
+        }
+        return (double) total / eccentricities.length;
+    }
+}
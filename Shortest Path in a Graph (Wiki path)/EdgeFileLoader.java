@@ -0,0 +1,499 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads an edge file (one "source TAB target" line per link) into a CsrGraph in parallel.
+ * The file is split into byte ranges that end on line breaks. Each range is memory-mapped,
+ * parsed, URL-decoded and resolved to vertex numbers on the common fork-join pool, and the
+ * per-range edge arrays are then merged straight into the CSR arrays. Ranges are merged in
+ * file order, so every vertex's neighbors come out in the same order as a line-by-line read.
+ * Names are percent-decoded into a reused byte buffer and looked up in the NameStore by
+ * their UTF-8 bytes, so no String is built for an edge.
+ *
+ * loadCompressed() builds CompressedGraphs instead, for graphs whose int arrays do not fit
+ * in memory. The edges are written to a temporary file of vertex pairs a batch at a time
+ * as they are parsed. Both directions are then encoded from that file a block of vertices
+ * at a time, so apart from the encoded graphs only a few ints per vertex and one block of
+ * neighbors are held in memory.
+ */
+final class EdgeFileLoader {
+    // ranges are at least this long, so small files are not split into tiny tasks
+    private static final long MIN_RANGE_BYTES = 1 << 22;
+    // and at most this long, so every range fits in one mapping
+    private static final long MAX_RANGE_BYTES = 1 << 30;
+    // size of the buffers the vertex pairs are written and read through
+    private static final int PAIR_BUFFER_BYTES = 1 << 20;
+    // edges a task holds before writing them to the pair file
+    private static final int PAIRS_PER_WRITE = PAIR_BUFFER_BYTES / 8;
+    // neighbors collected in memory at a time while encoding a CompressedGraph
+    private static final int BLOCK_EDGES = 1 << 22;
+
+    private EdgeFileLoader(){
+    }
+
+    /**
+     * Loads edgeFile into a graph over numVertices vertices.
+     * @param edgeFile name of the file with the edge names
+     * @param names article names, giving the vertex number of each decoded name
+     * @return graph containing every edge in the file, over the vertices of names
+     */
+    static CsrGraph load(String edgeFile, NameStore names) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(edgeFile, "r");
+             FileChannel channel = file.getChannel()){
+            long[] boundaries = splitIntoRanges(channel);
+            EdgeChunk[] chunks = new EdgeChunk[boundaries.length - 1];
+            parse(new ParseRanges(channel, edgeFile, boundaries, chunks, null, null, names, 0, chunks.length));
+            return merge(names.size(), chunks);
+        }
+    }
+
+    /**
+     * Loads edgeFile into a CompressedGraph and its reverse, without building a CsrGraph.
+     * The vertex pairs are kept in a temporary file while the graphs are encoded.
+     * @param edgeFile name of the file with the edge names
+     * @param names article names, giving the vertex number of each decoded name
+     * @return the graph containing every edge in the file, then the same graph reversed
+     */
+    static CompressedGraph[] loadCompressed(String edgeFile, NameStore names) throws IOException {
+        Path pairFile = Files.createTempFile("edges", ".pairs");
+        try (RandomAccessFile file = new RandomAccessFile(edgeFile, "r");
+             FileChannel channel = file.getChannel();
+             FileChannel pairs = FileChannel.open(pairFile, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            long[] boundaries = splitIntoRanges(channel);
+            AtomicLong pairBytes = new AtomicLong();
+            parse(new ParseRanges(channel, edgeFile, boundaries, null, pairs, pairBytes, names, 0, boundaries.length - 1));
+            long numEdges = pairBytes.get() / 8;
+
+            int[] outDegree = new int[names.size()];
+            int[] inDegree = new int[names.size()];
+            PairReader reader = new PairReader(pairs, numEdges);
+            for (int count = reader.read(); count > 0; count = reader.read()){
+                int[] batch = reader.pairs;
+                for (int i = 0; i < count; i += 2){
+                    outDegree[batch[i]]++;
+                    inDegree[batch[i + 1]]++;
+                }
+            }
+            CompressedGraph graph = encode(pairs, numEdges, outDegree, false);
+            CompressedGraph reverse = encode(pairs, numEdges, inDegree, true);
+            return new CompressedGraph[] {graph, reverse};
+        } finally {
+            Files.deleteIfExists(pairFile);
+        }
+    }
+
+    /**
+     * Runs the parse on the common fork-join pool, rethrowing the first read error.
+     */
+    private static void parse(ParseRanges task) throws IOException {
+        try {
+            ForkJoinPool.commonPool().invoke(task);
+        } catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Encodes one direction of the graph in the pair file: vertex v gets the targets of the
+     * pairs whose source is v, or with reverse, the sources of the pairs whose target is v.
+     * Vertices are taken in blocks whose lists fit in BLOCK_EDGES ints, and every block
+     * reads the pair file once.
+     * @param degree number of neighbors of each vertex in this direction
+     */
+    private static CompressedGraph encode(FileChannel pairs, long numEdges, int[] degree, boolean reverse) throws IOException {
+        int numVertices = degree.length;
+        int maxDegree = 0;
+        for (int v = 0; v < numVertices; v++){
+            maxDegree = Math.max(maxDegree, degree[v]);
+        }
+        // a block always has room for the longest list
+        int[] lists = new int[(int) Math.max(maxDegree, Math.min(numEdges, BLOCK_EDGES))];
+        int[] next = new int[numVertices];
+        int key = reverse ? 1 : 0;
+        CompressedGraph.Builder builder = new CompressedGraph.Builder(numVertices);
+        int first = 0;
+        while (first < numVertices){
+            int last = first;
+            int blockEdges = 0;
+            while (last < numVertices && blockEdges + (long) degree[last] <= lists.length){
+                next[last - first] = blockEdges;
+                blockEdges += degree[last];
+                last++;
+            }
+            PairReader reader = new PairReader(pairs, numEdges);
+            for (int count = reader.read(); count > 0; count = reader.read()){
+                int[] batch = reader.pairs;
+                for (int i = 0; i < count; i += 2){
+                    int vertex = batch[i + key];
+                    if (vertex >= first && vertex < last){
+                        lists[next[vertex - first]++] = batch[i + 1 - key];
+                    }
+                }
+            }
+            int start = 0;
+            for (int v = first; v < last; v++){
+                builder.add(lists, start, degree[v]);
+                start += degree[v];
+            }
+            first = last;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Picks range boundaries: roughly equal ranges, several per core, each moved
+     * forward to the start of the next line.
+     * @return boundaries[i] to boundaries[i + 1] is range i
+     */
+    private static long[] splitIntoRanges(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        long rangeBytes = Math.max(MIN_RANGE_BYTES, size / (parallelism * 4L) + 1);
+        rangeBytes = Math.min(rangeBytes, MAX_RANGE_BYTES);
+        // an empty file still gets one, empty, range
+        int numRanges = (int) Math.max(1, (size + rangeBytes - 1) / rangeBytes);
+        long[] boundaries = new long[numRanges + 1];
+        int count = 1;
+        for (int i = 1; i < numRanges; i++){
+            long boundary = nextLineStart(channel, i * rangeBytes, size);
+            // skips boundaries swallowed by a very long line
+            if (boundary > boundaries[count - 1] && boundary < size){
+                boundaries[count++] = boundary;
+            }
+        }
+        boundaries[count++] = size;
+        return java.util.Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * Returns the position just after the first line break at or after position, or size if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size){
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0){
+                break;
+            }
+            for (int i = 0; i < read; i++){
+                if (buffer.get(i) == '\n'){
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Copies every chunk's edges into CSR arrays, chunk by chunk in file order.
+     */
+    private static CsrGraph merge(int numVertices, EdgeChunk[] chunks){
+        long totalEdges = 0;
+        for (EdgeChunk chunk : chunks){
+            totalEdges += chunk.size;
+        }
+        if (totalEdges > Integer.MAX_VALUE - 8){
+            throw new IllegalStateException("Edge file has more edges than fit in one array: " + totalEdges);
+        }
+        int[] offsets = new int[numVertices + 1];
+        for (EdgeChunk chunk : chunks){
+            for (int i = 0; i < chunk.size; i++){
+                offsets[chunk.sources[i] + 1]++;
+            }
+        }
+        for (int v = 0; v < numVertices; v++){
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = new int[numVertices];
+        System.arraycopy(offsets, 0, next, 0, numVertices);
+        int[] targets = new int[(int) totalEdges];
+        for (int c = 0; c < chunks.length; c++){
+            EdgeChunk chunk = chunks[c];
+            for (int i = 0; i < chunk.size; i++){
+                targets[next[chunk.sources[i]]++] = chunk.destinations[i];
+            }
+            // lets the chunk be collected as soon as it is merged
+            chunks[c] = null;
+        }
+        return new CsrGraph(offsets, targets);
+    }
+
+    /**
+     * Edges parsed from one byte range, or the latest batch of them when they go to a pair
+     * file, as parallel source and destination arrays.
+     */
+    private static final class EdgeChunk {
+        private int[] sources;
+        private int[] destinations;
+        private int size;
+
+        EdgeChunk(int initialCapacity){
+            sources = new int[Math.max(initialCapacity, 16)];
+            destinations = new int[sources.length];
+        }
+
+        void add(int source, int destination){
+            if (size == sources.length){
+                sources = java.util.Arrays.copyOf(sources, size * 2);
+                destinations = java.util.Arrays.copyOf(destinations, size * 2);
+            }
+            sources[size] = source;
+            destinations[size] = destination;
+            size++;
+        }
+    }
+
+    /**
+     * Reads the vertex pairs of a pair file back in batches, from the start.
+     */
+    private static final class PairReader {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(PAIR_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        // the batch read last: source, target, source, target, ...
+        final int[] pairs = new int[PAIR_BUFFER_BYTES / 4];
+
+        PairReader(FileChannel channel, long numPairs){
+            this.channel = channel;
+            this.end = 8 * numPairs;
+        }
+
+        /**
+         * Reads the next batch into pairs.
+         * @return the number of ints read, or 0 at the end of the file
+         */
+        int read() throws IOException {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            while (buffer.hasRemaining()){
+                if (channel.read(buffer, position + buffer.position()) < 0){
+                    throw new EOFException("Pair file ended early");
+                }
+            }
+            position += buffer.limit();
+            buffer.flip();
+            int count = buffer.limit() / 4;
+            buffer.asIntBuffer().get(pairs, 0, count);
+            return count;
+        }
+    }
+
+    /**
+     * Parses ranges [from, to) of the boundaries, splitting in half until one range is left.
+     * Each range's edges go into chunks, or are appended to the pair file if there is one.
+     */
+    private static final class ParseRanges extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final String edgeFile;
+        private final long[] boundaries;
+        private final EdgeChunk[] chunks;
+        // file the edges are written to as vertex pairs instead, or null, and its length so far
+        private final FileChannel pairs;
+        private final AtomicLong pairBytes;
+        private final NameStore names;
+        private final int from;
+        private final int to;
+        // decoded name being looked up; each task parses one range on one thread
+        private byte[] decoded = new byte[256];
+        // buffer the edges are written to the pair file through, made on first use
+        private ByteBuffer pairBuffer;
+
+        ParseRanges(FileChannel channel, String edgeFile, long[] boundaries, EdgeChunk[] chunks,
+                    FileChannel pairs, AtomicLong pairBytes, NameStore names, int from, int to){
+            this.channel = channel;
+            this.edgeFile = edgeFile;
+            this.boundaries = boundaries;
+            this.chunks = chunks;
+            this.pairs = pairs;
+            this.pairBytes = pairBytes;
+            this.names = names;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseRanges(channel, edgeFile, boundaries, chunks, pairs, pairBytes, names, from, middle),
+                          new ParseRanges(channel, edgeFile, boundaries, chunks, pairs, pairBytes, names, middle, to));
+                return;
+            }
+            try {
+                EdgeChunk chunk = parseRange(boundaries[from], boundaries[from + 1]);
+                if (pairs == null){
+                    chunks[from] = chunk;
+                } else {
+                    writePairs(chunk);
+                }
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Appends the edges of chunk to the pair file and empties chunk. Tasks write in any
+         * order, which does not matter since CompressedGraph sorts every list.
+         */
+        private void writePairs(EdgeChunk chunk) throws IOException {
+            long position = pairBytes.getAndAdd(8L * chunk.size);
+            if (pairBuffer == null){
+                pairBuffer = ByteBuffer.allocate(PAIR_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            ByteBuffer buffer = pairBuffer;
+            for (int i = 0; i < chunk.size; i++){
+                if (buffer.remaining() < 8){
+                    position = writeOut(buffer, position);
+                }
+                buffer.putInt(chunk.sources[i]);
+                buffer.putInt(chunk.destinations[i]);
+            }
+            writeOut(buffer, position);
+            chunk.size = 0;
+        }
+
+        /**
+         * Writes everything in buffer to the pair file at position and empties buffer.
+         * @return the position after the bytes written
+         */
+        private long writeOut(ByteBuffer buffer, long position) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()){
+                position += pairs.write(buffer, position);
+            }
+            buffer.clear();
+            return position;
+        }
+
+        /**
+         * Parses every line in the range start to end.
+         */
+        private EdgeChunk parseRange(long start, long end) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            int length = buffer.limit();
+            EdgeChunk chunk = new EdgeChunk(pairs == null ? length / 32 : PAIRS_PER_WRITE);
+            byte[] line = new byte[256];
+            int lineStart = 0;
+            for (int i = 0; i <= length; i++){
+                if (i < length && buffer.get(i) != '\n'){
+                    continue;
+                }
+                int lineLength = i - lineStart;
+                if (lineLength > line.length){
+                    line = new byte[Math.max(lineLength, line.length * 2)];
+                }
+                buffer.get(lineStart, line, 0, lineLength);
+                parseLine(line, lineLength, chunk);
+                if (pairs != null && chunk.size == PAIRS_PER_WRITE){
+                    writePairs(chunk);
+                }
+                lineStart = i + 1;
+            }
+            return chunk;
+        }
+
+        /**
+         * Adds the edge on one line to chunk. Skips comments and empty lines, like the
+         * line-by-line reader: any line containing '#' is a comment.
+         */
+        private void parseLine(byte[] line, int length, EdgeChunk chunk) throws IOException {
+            if (length > 0 && line[length - 1] == '\r'){
+                length--;
+            }
+            if (length == 0){
+                return;
+            }
+            int tab = -1;
+            for (int i = 0; i < length; i++){
+                if (line[i] == '#'){
+                    return;
+                }
+                if (line[i] == '\t' && tab < 0){
+                    tab = i;
+                }
+            }
+            if (tab < 0){
+                throw new IOException(edgeFile + ": line without a tab: " + new String(line, 0, length, StandardCharsets.UTF_8));
+            }
+            // ignores anything after a second tab, as splitting on tabs did
+            int secondEnd = tab + 1;
+            while (secondEnd < length && line[secondEnd] != '\t'){
+                secondEnd++;
+            }
+            int vertex1 = resolve(line, 0, tab);
+            int vertex2 = resolve(line, tab + 1, secondEnd);
+            chunk.add(vertex1, vertex2);
+        }
+
+        /**
+         * Decodes the URL-encoded name in line[start, end) and returns its vertex number.
+         */
+        private int resolve(byte[] line, int start, int end) throws IOException {
+            int length = decode(line, start, end);
+            if (length >= 0){
+                int vertex = names.getVertex(decoded, 0, length);
+                if (vertex >= 0){
+                    return vertex;
+                }
+            }
+            // malformed escapes or UTF-8 get the String decoder's exact treatment, as do errors
+            String encoded = new String(line, start, end - start, StandardCharsets.UTF_8);
+            String readableString = URLDecoder.decode(encoded, StandardCharsets.UTF_8);
+            int vertex = names.getVertex(readableString);
+            if (vertex < 0){
+                throw new IOException(edgeFile + ": link to unknown article " + readableString);
+            }
+            return vertex;
+        }
+
+        /**
+         * Percent-decodes line[start, end) into decoded the way URLDecoder does: "+" becomes
+         * a space and "%xx" the byte xx.
+         * @return the number of decoded bytes, or -1 if an escape is malformed
+         */
+        private int decode(byte[] line, int start, int end){
+            if (end - start > decoded.length){
+                decoded = new byte[Math.max(end - start, decoded.length * 2)];
+            }
+            int length = 0;
+            for (int i = start; i < end; i++){
+                byte b = line[i];
+                if (b == '+'){
+                    b = ' ';
+                } else if (b == '%'){
+                    if (i + 2 >= end){
+                        return -1;
+                    }
+                    int high = Character.digit(line[i + 1], 16);
+                    int low = Character.digit(line[i + 2], 16);
+                    if (high < 0 || low < 0){
+                        return -1;
+                    }
+                    b = (byte) (high << 4 | low);
+                    i += 2;
+                }
+                decoded[length++] = b;
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Compact binary snapshot of a wiki graph: the article name store and both the forward
+ * and reverse adjacency lists, so a PathFinder can be loaded without scanning or
+ * URL-decoding the text files again. The file is read back with FileChannel.map, and
+ * the graphs and the name store, including its hash table, are served straight from the
+ * mapping, so loading takes the same short time for any size of graph and the operating
+ * system pages the arrays in as searches touch them.
+ *
+ * The graphs are stored as CsrGraph arrays, or, for a PathFinder whose graph is
+ * compressed, as the pages of a CompressedGraph, which are read back compressed.
+ *
+ * Layout (all integers little-endian):
+ *   header    magic, version, numVertices, layout, numEdges (long), nameBytes (long), nameSlots, 0
+ *   forward   CSR layout: offsets[numVertices + 1], targets[numEdges]
+ *             compressed layout: numPages, firstVertex[numPages], pageBytes[numPages],
+ *             starts[numVertices], the bytes of every page back to back, then zeros up
+ *             to a multiple of 4 bytes
+ *   reverse   the same as forward
+ *   names     nameOffsets[numVertices + 1], UTF-8 bytes of every name back to back,
+ *             hash table slots[nameSlots]
+ *
+ * Usage to compile a snapshot once:
+ *   java GraphSnapshot vertexFile edgeFile snapshotFile [vertexOrder] [compressed]
+ * where vertexOrder is FILE (the default), BFS or DEGREE; the snapshot keeps that numbering.
+ * With compressed, the graph is loaded with PathFinder.loadCompressed() and stored compressed.
+ */
+public final class GraphSnapshot {
+    private static final int MAGIC = 0x57504753;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 40;
+    // values of the layout field
+    private static final int CSR_LAYOUT = 0;
+    private static final int COMPRESSED_LAYOUT = 1;
+    // size of the buffer the file is written through
+    private static final int CHUNK_BYTES = 1 << 26;
+
+    private final IntGraph graph;
+    private final IntGraph reverseGraph;
+    private final NameStore names;
+
+    private GraphSnapshot(IntGraph graph, IntGraph reverseGraph, NameStore names){
+        this.graph = graph;
+        this.reverseGraph = reverseGraph;
+        this.names = names;
+    }
+
+    /**
+     * Returns the forward graph.
+     */
+    public IntGraph getGraph(){
+        return graph;
+    }
+
+    /**
+     * Returns the reverse graph.
+     */
+    public IntGraph getReverseGraph(){
+        return reverseGraph;
+    }
+
+    /**
+     * Returns the article names.
+     */
+    public NameStore getNames(){
+        return names;
+    }
+
+    /**
+     * Writes a snapshot of graph, its reverse and the vertex names to snapshotFile. The
+     * snapshot is written to a temporary file that then replaces snapshotFile, so a snapshot
+     * that is mapped by a running PathFinder can be overwritten safely. If both graphs are
+     * CompressedGraphs, they are stored in the compressed layout.
+     * @param snapshotFile file to write; replaced if it exists
+     * @param graph forward graph
+     * @param reverseGraph graph with every edge of graph reversed
+     * @param names article name of each vertex; removed articles have an empty name
+     */
+    public static void write(String snapshotFile, IntGraph graph, IntGraph reverseGraph, NameStore names) throws IOException {
+        boolean compressed = graph instanceof CompressedGraph && reverseGraph instanceof CompressedGraph;
+        if (!compressed && graph.numEdges() > Integer.MAX_VALUE){
+            throw new IOException("Graph has too many edges for a CSR snapshot: " + graph.numEdges());
+        }
+        Path target = Paths.get(snapshotFile).toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (RandomAccessFile file = new RandomAccessFile(temporary.toFile(), "rw");
+                 FileChannel channel = file.getChannel()){
+                ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(graph.numVertices());
+                buffer.putInt(compressed ? COMPRESSED_LAYOUT : CSR_LAYOUT);
+                buffer.putLong(graph.numEdges());
+                buffer.putLong(names.numBytes());
+                buffer.putInt(names.numSlots());
+                buffer.putInt(0);
+                if (compressed){
+                    writeCompressedGraph(channel, buffer, (CompressedGraph) graph);
+                    writeCompressedGraph(channel, buffer, (CompressedGraph) reverseGraph);
+                } else {
+                    writeGraph(channel, buffer, graph);
+                    writeGraph(channel, buffer, reverseGraph);
+                }
+                writeInts(channel, buffer, names.offsetsView());
+                writeBytes(channel, buffer, names.bytesView());
+                writeInts(channel, buffer, names.slotsView());
+                flush(channel, buffer);
+            }
+            // a rename leaves the old file in place for anything that still maps it
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by write(). Only the header and the page tables of compressed
+     * graphs are read; the arrays are mapped and read later, as they are used.
+     * @param snapshotFile file to read
+     * @return the graphs and names stored in the file
+     * @throws IOException if the file cannot be read, or is not a snapshot of this version,
+     *      or its header does not match its size
+     */
+    public static GraphSnapshot read(String snapshotFile) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+             FileChannel channel = file.getChannel()){
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES){
+                throw new IOException(snapshotFile + " is not a graph snapshot");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC){
+                throw new IOException(snapshotFile + " is not a graph snapshot");
+            }
+            int version = header.getInt();
+            if (version != VERSION){
+                throw new IOException(snapshotFile + " has snapshot version " + version + ", expected " + VERSION);
+            }
+            int numVertices = header.getInt();
+            int layout = header.getInt();
+            long numEdges = header.getLong();
+            long nameBytes = header.getLong();
+            int nameSlots = header.getInt();
+            // the name hash table always has an empty slot, so lookups stop
+            if (numVertices < 0 || numEdges < 0 || nameBytes < 0 || nameBytes > Integer.MAX_VALUE
+                || Integer.bitCount(nameSlots) != 1 || nameSlots <= numVertices
+                || (layout != CSR_LAYOUT && layout != COMPRESSED_LAYOUT)
+                || (layout == CSR_LAYOUT && numEdges > Integer.MAX_VALUE)){
+                throw new IOException(snapshotFile + " has a corrupt header");
+            }
+            // the name arrays and list starts are mapped whole, so each must fit in one mapping
+            if (4L * (numVertices + 1L) > Integer.MAX_VALUE || 4L * nameSlots > Integer.MAX_VALUE){
+                throw new IOException(snapshotFile + " has too many names to map");
+            }
+            long nameSectionBytes = 4L * (numVertices + 1L) + nameBytes + 4L * nameSlots;
+
+            long position = HEADER_BYTES;
+            IntGraph graph;
+            IntGraph reverseGraph;
+            if (layout == CSR_LAYOUT){
+                long expectedSize = HEADER_BYTES + 4L * (2L * (numVertices + 1L) + 2L * numEdges) + nameSectionBytes;
+                if (fileSize != expectedSize){
+                    throw new IOException(snapshotFile + " is " + fileSize + " bytes, but its header describes " + expectedSize);
+                }
+                graph = mapGraph(channel, snapshotFile, position, numVertices, (int) numEdges);
+                position += 4L * (numVertices + 1L + numEdges);
+                reverseGraph = mapGraph(channel, snapshotFile, position, numVertices, (int) numEdges);
+                position += 4L * (numVertices + 1L + numEdges);
+            } else {
+                CompressedGraph compressed = mapCompressedGraph(channel, snapshotFile, position, numVertices, numEdges);
+                position += compressedGraphBytes(compressed);
+                graph = compressed;
+                compressed = mapCompressedGraph(channel, snapshotFile, position, numVertices, numEdges);
+                position += compressedGraphBytes(compressed);
+                reverseGraph = compressed;
+                if (fileSize != position + nameSectionBytes){
+                    throw new IOException(snapshotFile + " is " + fileSize + " bytes, but its header describes " + (position + nameSectionBytes));
+                }
+            }
+            IntBuffer nameOffsets = mapInts(channel, position, numVertices + 1);
+            position += 4L * (numVertices + 1L);
+            ByteBuffer nameData = channel.map(FileChannel.MapMode.READ_ONLY, position, nameBytes);
+            position += nameBytes;
+            IntBuffer slots = mapInts(channel, position, nameSlots);
+
+            // the names must start at 0 and end exactly at the number of name bytes
+            if (nameOffsets.get(0) != 0 || nameOffsets.get(numVertices) != nameBytes){
+                throw new IOException(snapshotFile + " has offsets that do not match its header");
+            }
+            NameStore names = new NameStore(nameData, nameOffsets, slots);
+            return new GraphSnapshot(graph, reverseGraph, names);
+        }
+    }
+
+    /**
+     * Maps a graph stored in the CSR layout at position.
+     * @throws IOException if its offsets do not start at 0 and end at numEdges
+     */
+    private static CsrGraph mapGraph(FileChannel channel, String snapshotFile, long position, int numVertices, int numEdges) throws IOException {
+        MappedIntArray offsets = MappedIntArray.map(channel, position, numVertices + 1L);
+        MappedIntArray targets = MappedIntArray.map(channel, position + 4L * (numVertices + 1L), numEdges);
+        if (offsets.get(0) != 0 || offsets.get(numVertices) != numEdges){
+            throw new IOException(snapshotFile + " has offsets that do not match its header");
+        }
+        return new CsrGraph(offsets, targets);
+    }
+
+    /**
+     * Maps a graph stored in the compressed layout at position, checking that its page
+     * table is consistent and that its pages lie inside the file.
+     */
+    private static CompressedGraph mapCompressedGraph(FileChannel channel, String snapshotFile, long position,
+                                                      int numVertices, long numEdges) throws IOException {
+        long fileSize = channel.size();
+        if (position + 4 > fileSize){
+            throw new IOException(snapshotFile + " ends inside a graph");
+        }
+        int numPages = mapInts(channel, position, 1).get(0);
+        // every page after the first starts with a different vertex
+        if (numPages < 1 || numPages > numVertices + 1L
+            || position + 4L + 8L * numPages + 4L * numVertices > fileSize){
+            throw new IOException(snapshotFile + " has a corrupt page table");
+        }
+        position += 4;
+        int[] firstVertex = new int[numPages];
+        mapInts(channel, position, numPages).get(firstVertex);
+        position += 4L * numPages;
+        int[] pageBytes = new int[numPages];
+        mapInts(channel, position, numPages).get(pageBytes);
+        position += 4L * numPages;
+        IntBuffer starts = mapInts(channel, position, numVertices);
+        position += 4L * numVertices;
+        ByteBuffer[] pages = new ByteBuffer[numPages];
+        for (int p = 0; p < numPages; p++){
+            boolean ordered = p == 0 ? firstVertex[p] == 0 : firstVertex[p] > firstVertex[p - 1] && firstVertex[p] < numVertices;
+            if (!ordered || pageBytes[p] < 0 || pageBytes[p] > CompressedGraph.PAGE_BYTES
+                || position + pageBytes[p] > fileSize
+                || (firstVertex[p] < numVertices && starts.get(firstVertex[p]) != 0)){
+                throw new IOException(snapshotFile + " has a corrupt page table");
+            }
+            pages[p] = channel.map(FileChannel.MapMode.READ_ONLY, position, pageBytes[p]);
+            position += pageBytes[p];
+        }
+        return new CompressedGraph(pages, firstVertex, starts, numEdges);
+    }
+
+    /**
+     * Returns the number of bytes graph takes in the compressed layout.
+     */
+    private static long compressedGraphBytes(CompressedGraph graph){
+        long pageBytes = 0;
+        for (int p = 0; p < graph.numPages(); p++){
+            pageBytes += graph.pageLength(p);
+        }
+        return 4L + 8L * graph.numPages() + 4L * graph.numVertices() + padding(pageBytes) + pageBytes;
+    }
+
+    /**
+     * Returns the number of zero bytes that follow length bytes of pages, so the next
+     * section starts at a multiple of 4 bytes.
+     */
+    private static int padding(long length){
+        return (int) (-length & 3);
+    }
+
+    /**
+     * Maps count little-endian ints of the channel starting at position.
+     */
+    private static IntBuffer mapInts(FileChannel channel, long position, int count) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Appends the offsets and then the targets of graph, in compressed sparse row form.
+     */
+    private static void writeGraph(FileChannel channel, ByteBuffer buffer, IntGraph graph) throws IOException {
+        int numVertices = graph.numVertices();
+        int offset = 0;
+        putInt(channel, buffer, offset);
+        for (int v = 0; v < numVertices; v++){
+            offset += graph.getDegree(v);
+            putInt(channel, buffer, offset);
+        }
+        NeighborCursor cursor = new NeighborCursor();
+        for (int v = 0; v < numVertices; v++){
+            graph.getNeighbors(v, cursor);
+            while (cursor.hasNext()){
+                putInt(channel, buffer, cursor.next());
+            }
+        }
+    }
+
+    /**
+     * Appends the page table, list starts and pages of graph, in the compressed layout.
+     */
+    private static void writeCompressedGraph(FileChannel channel, ByteBuffer buffer, CompressedGraph graph) throws IOException {
+        int numPages = graph.numPages();
+        putInt(channel, buffer, numPages);
+        for (int p = 0; p < numPages; p++){
+            putInt(channel, buffer, graph.firstVertex(p));
+        }
+        long pageBytes = 0;
+        for (int p = 0; p < numPages; p++){
+            putInt(channel, buffer, graph.pageLength(p));
+            pageBytes += graph.pageLength(p);
+        }
+        writeInts(channel, buffer, graph.startsView());
+        for (int p = 0; p < numPages; p++){
+            writeBytes(channel, buffer, graph.pageView(p));
+        }
+        writeBytes(channel, buffer, ByteBuffer.allocate(padding(pageBytes)));
+    }
+
+    /**
+     * Appends value to the channel through buffer, flushing first if buffer is full.
+     */
+    private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < 4){
+            flush(channel, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    /**
+     * Appends the remaining values to the channel through buffer, flushing whenever buffer
+     * fills up.
+     */
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, IntBuffer values) throws IOException {
+        while (values.hasRemaining()){
+            if (buffer.remaining() < 4){
+                flush(channel, buffer);
+            }
+            IntBuffer ints = buffer.asIntBuffer();
+            IntBuffer part = values.slice();
+            part.limit(Math.min(ints.remaining(), part.remaining()));
+            values.position(values.position() + part.remaining());
+            buffer.position(buffer.position() + part.remaining() * 4);
+            ints.put(part);
+        }
+    }
+
+    /**
+     * Appends the remaining bytes to the channel through buffer, flushing whenever buffer
+     * fills up.
+     */
+    private static void writeBytes(FileChannel channel, ByteBuffer buffer, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()){
+            if (!buffer.hasRemaining()){
+                flush(channel, buffer);
+            }
+            ByteBuffer part = bytes.slice();
+            part.limit(Math.min(buffer.remaining(), part.remaining()));
+            bytes.position(bytes.position() + part.remaining());
+            buffer.put(part);
+        }
+    }
+
+    /**
+     * Writes out everything in buffer and empties it.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Compiles a vertex file and an edge file into a snapshot.
+     */
+    public static void main(String[] args){
+        int numArgs = args.length;
+        boolean compressed = numArgs > 3 && args[numArgs - 1].equalsIgnoreCase("compressed");
+        if (compressed){
+            numArgs--;
+        }
+        if (numArgs != 3 && numArgs != 4){
+            System.err.println("Usage: java GraphSnapshot vertexFile edgeFile snapshotFile [FILE|BFS|DEGREE] [compressed]");
+            System.exit(1);
+        }
+        VertexOrder order = VertexOrder.FILE;
+        if (numArgs == 4){
+            try {
+                order = VertexOrder.valueOf(args[3].toUpperCase());
+            } catch (IllegalArgumentException e){
+                System.err.println("Unknown vertex order " + args[3] + "; use FILE, BFS or DEGREE");
+                System.exit(1);
+            }
+        }
+        PathFinder pathFinder = compressed ? PathFinder.loadCompressed(args[0], args[1], order) : new PathFinder(args[0], args[1], order);
+        pathFinder.writeSnapshot(args[2]);
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of changes to a PathFinder's graph: articles and links to add or remove.
+ * The changes are applied in the order they were added, all at once, by
+ * PathFinder.applyUpdate(). Queries running at that moment keep the graph they started
+ * with; queries started afterwards see every change in the batch.
+ */
+public class GraphUpdate {
+    // kinds of change
+    static final int ADD_ARTICLE = 0;
+    static final int REMOVE_ARTICLE = 1;
+    static final int ADD_LINK = 2;
+    static final int REMOVE_LINK = 3;
+
+    private final List<Integer> kinds;
+    private final List<String> firstNames;
+    private final List<String> secondNames;
+
+    /**
+     * Constructs an empty GraphUpdate.
+     */
+    public GraphUpdate(){
+        kinds = new ArrayList<Integer>();
+        firstNames = new ArrayList<String>();
+        secondNames = new ArrayList<String>();
+    }
+
+    /**
+     * Adds an article with no links. The name must not already be in use.
+     * @return this update, so calls can be chained
+     * @throws IllegalArgumentException if name is empty, since a vertex with an empty name
+     *      has no article
+     */
+    public GraphUpdate addArticle(String name){
+        return add(ADD_ARTICLE, name, null);
+    }
+
+    /**
+     * Removes an article and every link to or from it.
+     * @return this update, so calls can be chained
+     */
+    public GraphUpdate removeArticle(String name){
+        return add(REMOVE_ARTICLE, name, null);
+    }
+
+    /**
+     * Adds a link from the article called from to the article called to.
+     * @return this update, so calls can be chained
+     */
+    public GraphUpdate addLink(String from, String to){
+        return add(ADD_LINK, from, to);
+    }
+
+    /**
+     * Removes every link from the article called from to the article called to.
+     * @return this update, so calls can be chained
+     */
+    public GraphUpdate removeLink(String from, String to){
+        return add(REMOVE_LINK, from, to);
+    }
+
+    private GraphUpdate add(int kind, String first, String second){
+        if (first == null || (kind >= ADD_LINK && second == null)){
+            throw new IllegalArgumentException("Article names must not be null");
+        }
+        if (kind == ADD_ARTICLE && first.isEmpty()){
+            throw new IllegalArgumentException("Article names must not be empty");
+        }
+        kinds.add(kind);
+        firstNames.add(first);
+        secondNames.add(second);
+        return this;
+    }
+
+    /**
+     * Returns the number of changes in this update.
+     */
+    public int size(){
+        return kinds.size();
+    }
+
+    int getKind(int i){
+        return kinds.get(i);
+    }
+
+    String getFirstName(int i){
+        return firstNames.get(i);
+    }
+
+    String getSecondName(int i){
+        return secondNames.get(i);
+    }
+}
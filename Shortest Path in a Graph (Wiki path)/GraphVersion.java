@@ -0,0 +1,145 @@
+/**
+ * One immutable state of a PathFinder's graph: the links in both directions and the
+ * article names. Updates never modify a GraphVersion; they build a new one and publish
+ * it, so a query that read the current version at its start sees a consistent graph
+ * for its whole run, no matter what is updated meanwhile.
+ */
+final class GraphVersion {
+    // increases with every change to the links or names; compaction keeps it
+    final long number;
+    final IntGraph graph;
+    final IntGraph reverseGraph;
+    final ArticleNames names;
+
+    GraphVersion(long number, IntGraph graph, IntGraph reverseGraph, ArticleNames names){
+        this.number = number;
+        this.graph = graph;
+        this.reverseGraph = reverseGraph;
+        this.names = names;
+    }
+
+    /**
+     * Returns the number of vertex numbers in use, including ones whose article was removed.
+     */
+    int numVertices(){
+        return graph.numVertices();
+    }
+
+    /**
+     * Returns the number of edges held outside the compact base graph.
+     */
+    long overlayEdges(){
+        return graph instanceof OverlayGraph ? ((OverlayGraph) graph).overlayEdges() : 0;
+    }
+
+    /**
+     * Returns the number of vertices whose neighbors changed since the base graph was built.
+     */
+    int overlayVertices(){
+        return graph instanceof OverlayGraph ? ((OverlayGraph) graph).overlaySize() : 0;
+    }
+
+    /**
+     * Returns a new version with every change in update applied, numbered number.
+     * @throws IllegalArgumentException if a change names a missing article, or adds one that exists
+     */
+    GraphVersion apply(GraphUpdate update, long number){
+        OverlayGraph.Editor forward = overlay(graph).edit();
+        OverlayGraph.Editor backward = overlay(reverseGraph).edit();
+        ArticleNames.Editor namesEditor = names.edit();
+        for (int i = 0; i < update.size(); i++){
+            String first = update.getFirstName(i);
+            switch (update.getKind(i)){
+                case GraphUpdate.ADD_ARTICLE: {
+                    if (namesEditor.getVertex(first) >= 0){
+                        throw new IllegalArgumentException("Article already exists: " + first);
+                    }
+                    int vertex = forward.addVertex();
+                    backward.addVertex();
+                    namesEditor.add(vertex, first);
+                    break;
+                }
+                case GraphUpdate.REMOVE_ARTICLE: {
+                    int vertex = vertexOf(namesEditor, first);
+                    // drops the links out of the article, then the links into it
+                    for (int neighbor : forward.getNeighbors(vertex)){
+                        backward.removeNeighbor(neighbor, vertex);
+                    }
+                    forward.clearNeighbors(vertex);
+                    for (int neighbor : backward.getNeighbors(vertex)){
+                        forward.removeNeighbor(neighbor, vertex);
+                    }
+                    backward.clearNeighbors(vertex);
+                    namesEditor.remove(vertex, first);
+                    break;
+                }
+                case GraphUpdate.ADD_LINK: {
+                    int from = vertexOf(namesEditor, first);
+                    int to = vertexOf(namesEditor, update.getSecondName(i));
+                    forward.addNeighbor(from, to);
+                    backward.addNeighbor(to, from);
+                    break;
+                }
+                case GraphUpdate.REMOVE_LINK: {
+                    int from = vertexOf(namesEditor, first);
+                    int to = vertexOf(namesEditor, update.getSecondName(i));
+                    forward.removeNeighbor(from, to);
+                    backward.removeNeighbor(to, from);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown change " + update.getKind(i));
+            }
+        }
+        return new GraphVersion(number, forward.freeze(), backward.freeze(), namesEditor.freeze());
+    }
+
+    /**
+     * Returns the same graph with every change folded into compact base graphs and names.
+     * Keeps this version's number, since the links and names are unchanged.
+     */
+    GraphVersion compact(){
+        if (!(graph instanceof OverlayGraph) && !names.hasChanges()){
+            return this;
+        }
+        return new GraphVersion(number, compactCopy(graph), compactCopy(reverseGraph), names.compact());
+    }
+
+    /**
+     * Returns the same graph with both directions gap-encoded in CompressedGraphs.
+     * Keeps this version's number, since the links and names are unchanged.
+     */
+    GraphVersion compress(){
+        if (graph instanceof CompressedGraph){
+            return this;
+        }
+        return new GraphVersion(number, CompressedGraph.copyOf(graph), CompressedGraph.copyOf(reverseGraph), names.compact());
+    }
+
+    /**
+     * Copies graph into the layout of its base graph, so a compressed graph stays compressed.
+     */
+    private static IntGraph compactCopy(IntGraph graph){
+        IntGraph base = graph instanceof OverlayGraph ? ((OverlayGraph) graph).getBase() : graph;
+        return base instanceof CompressedGraph ? CompressedGraph.copyOf(graph) : CsrGraph.copyOf(graph);
+    }
+
+    /**
+     * Returns the same graph numbered number.
+     */
+    GraphVersion renumber(long number){
+        return new GraphVersion(number, graph, reverseGraph, names);
+    }
+
+    private static OverlayGraph overlay(IntGraph graph){
+        return graph instanceof OverlayGraph ? (OverlayGraph) graph : OverlayGraph.over(graph);
+    }
+
+    private static int vertexOf(ArticleNames.Editor names, String name){
+        int vertex = names.getVertex(name);
+        if (vertex < 0){
+            throw new IllegalArgumentException("No article named " + name);
+        }
+        return vertex;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * A directed graph whose vertices are the integers 0 to numVertices() - 1.
+ * Unlike UnweightedGraph, neighbors are handed out through a reusable
+ * NeighborCursor instead of an Iterable<Integer>, so traversals never box
+ * vertex numbers or allocate while scanning.
+ */
+public interface IntGraph {
+
+    /**
+     * Returns the number of vertices in the graph.
+     */
+    public int numVertices();
+
+    /**
+     * Returns the number of directed edges in the graph.
+     */
+    public long numEdges();
+
+    /**
+     * Returns the number of edges leaving vertex.
+     * @param vertex vertex number
+     * @return out-degree of vertex
+     */
+    public int getDegree(int vertex);
+
+    /**
+     * Positions cursor over the neighbors of vertex, in the order the edges were added
+     * (CompressedGraph lists them in increasing order instead).
+     * @param vertex vertex number
+     * @param cursor cursor to reuse for the scan
+     */
+    public void getNeighbors(int vertex, NeighborCursor cursor);
+}
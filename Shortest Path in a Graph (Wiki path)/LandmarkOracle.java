@@ -0,0 +1,372 @@
+/**
+ * Landmark (ALT) distance oracle. For a few landmark vertices L it stores the distance
+ * from L to every vertex and from every vertex to L. By the triangle inequality these
+ * give, in O(number of landmarks) time,
+ *   lower bounds  d(s,t) >= d(L,t) - d(L,s)  and  d(s,t) >= d(s,L) - d(t,L),
+ *   upper bounds  d(s,t) <= d(s,L) + d(L,t),
+ * and sometimes a proof that no path exists (L reaches s but not t, or t reaches L but
+ * s does not). The lower bound is also a consistent A* heuristic for exact searches.
+ *
+ * Distances are stored one byte per vertex per landmark and direction, or two bytes if
+ * some distance is too large for a byte. Each search's distances are packed as soon as it
+ * finishes, so building needs little more than the finished oracle and one search's
+ * arrays. Landmarks are chosen farthest-first: the first is the vertex with the most
+ * links, and each next one is the vertex farthest from the landmarks chosen so far,
+ * preferring vertices none of them reach.
+ */
+final class LandmarkOracle {
+    // returned by lowerBound() when there is provably no path, and by upperBound() when nothing is known
+    static final int INFINITE = Integer.MAX_VALUE;
+    // stored in place of a distance for unreachable vertices
+    private static final int BYTE_UNREACHABLE = 0xff;
+    private static final int SHORT_UNREACHABLE = 0xffff;
+
+    // number of the graph version the distances were computed on
+    private final long version;
+    private final int[] landmarks;
+    // exactly one of each pair is used: byte storage when every distance fits, short storage otherwise
+    private final byte[][] fromBytes;
+    private final byte[][] toBytes;
+    private final short[][] fromShorts;
+    private final short[][] toShorts;
+
+    private LandmarkOracle(long version, int[] landmarks, byte[][] fromBytes, byte[][] toBytes, short[][] fromShorts, short[][] toShorts){
+        this.version = version;
+        this.landmarks = landmarks;
+        this.fromBytes = fromBytes;
+        this.toBytes = toBytes;
+        this.fromShorts = fromShorts;
+        this.toShorts = toShorts;
+    }
+
+    /**
+     * Chooses numLandmarks landmarks and computes their distances.
+     * @param graph graph to index
+     * @param reverseGraph the same edges reversed
+     * @param numLandmarks number of landmarks; capped at the number of vertices
+     * @param buffers scratch arrays for the searches
+     * @param version number of the graph version being indexed
+     * @return the oracle
+     */
+    static LandmarkOracle build(IntGraph graph, IntGraph reverseGraph, int numLandmarks, SearchBuffers buffers, long version){
+        int numVertices = graph.numVertices();
+        numLandmarks = Math.min(numLandmarks, numVertices);
+        int[] landmarks = new int[numLandmarks];
+        // each search's distances are packed straight away, in bytes until one does not fit
+        byte[][] fromBytes = new byte[numLandmarks][];
+        byte[][] toBytes = new byte[numLandmarks][];
+        short[][] fromShorts = null;
+        short[][] toShorts = null;
+        // distance from the nearest landmark chosen so far; -1 while no landmark reaches the vertex
+        int[] nearest = new int[numVertices];
+        java.util.Arrays.fill(nearest, -1);
+        DirectionOptimizingBfs search = buffers.getDirectionOptimizing();
+        int[] distance = buffers.distance;
+
+        for (int l = 0; l < numLandmarks; l++){
+            int landmark = chooseNext(graph, nearest, l == 0);
+            landmarks[l] = landmark;
+            // first the distances from the landmark, then the distances to it
+            for (int direction = 0; direction < 2; direction++){
+                boolean fromLandmark = direction == 0;
+                if (fromLandmark){
+                    search.search(graph, reverseGraph, landmark, -1, buffers.parent, distance);
+                } else {
+                    search.search(reverseGraph, graph, landmark, -1, buffers.parent, distance);
+                }
+                int maxDistance = 0;
+                for (int v = 0; v < numVertices; v++){
+                    // the search leaves the entries of unreached vertices as they were
+                    if (!search.isReached(v)){
+                        distance[v] = -1;
+                    }
+                    maxDistance = Math.max(maxDistance, distance[v]);
+                    if (fromLandmark && distance[v] >= 0 && (nearest[v] < 0 || distance[v] < nearest[v])){
+                        nearest[v] = distance[v];
+                    }
+                }
+                if (maxDistance >= SHORT_UNREACHABLE){
+                    throw new IllegalStateException("Graph has a shortest path of length " + maxDistance + ", too long to index");
+                }
+                if (maxDistance >= BYTE_UNREACHABLE && fromShorts == null){
+                    // widens the landmarks packed so far, once
+                    fromShorts = widen(fromBytes);
+                    toShorts = widen(toBytes);
+                    fromBytes = null;
+                    toBytes = null;
+                }
+                if (fromShorts == null){
+                    byte[][] packed = fromLandmark ? fromBytes : toBytes;
+                    packed[l] = toBytes(distance, numVertices);
+                } else {
+                    short[][] packed = fromLandmark ? fromShorts : toShorts;
+                    packed[l] = toShorts(distance, numVertices);
+                }
+            }
+            // landmarks are never chosen twice
+            nearest[landmark] = 0;
+        }
+        return new LandmarkOracle(version, landmarks, fromBytes, toBytes, fromShorts, toShorts);
+    }
+
+    /**
+     * Picks the next landmark: the vertex with the most links if first is true, otherwise
+     * an unreached vertex if there is one, otherwise the vertex farthest from the chosen
+     * landmarks. Ties go to the vertex with the most links.
+     */
+    private static int chooseNext(IntGraph graph, int[] nearest, boolean first){
+        int best = 0;
+        long bestScore = Long.MIN_VALUE;
+        for (int v = 0; v < nearest.length; v++){
+            // unreached vertices score above every distance
+            long distanceScore = first ? 0 : (nearest[v] < 0 ? Integer.MAX_VALUE : nearest[v]);
+            if (!first && nearest[v] == 0){
+                continue;
+            }
+            long score = (distanceScore << 32) | graph.getDegree(v);
+            if (score > bestScore){
+                bestScore = score;
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Packs distances[0] to distances[numVertices - 1] one byte each; every distance must
+     * be below BYTE_UNREACHABLE.
+     */
+    private static byte[] toBytes(int[] distances, int numVertices){
+        byte[] packed = new byte[numVertices];
+        for (int v = 0; v < numVertices; v++){
+            packed[v] = (byte) (distances[v] < 0 ? BYTE_UNREACHABLE : distances[v]);
+        }
+        return packed;
+    }
+
+    /**
+     * Packs distances[0] to distances[numVertices - 1] two bytes each.
+     */
+    private static short[] toShorts(int[] distances, int numVertices){
+        short[] packed = new short[numVertices];
+        for (int v = 0; v < numVertices; v++){
+            packed[v] = (short) (distances[v] < 0 ? SHORT_UNREACHABLE : distances[v]);
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the byte-packed distances as short-packed ones. Entries not packed yet stay
+     * null, and each byte array is dropped once it is copied.
+     */
+    private static short[][] widen(byte[][] packed){
+        short[][] wide = new short[packed.length][];
+        for (int l = 0; l < packed.length && packed[l] != null; l++){
+            wide[l] = new short[packed[l].length];
+            for (int v = 0; v < packed[l].length; v++){
+                int distance = packed[l][v] & 0xff;
+                wide[l][v] = (short) (distance == BYTE_UNREACHABLE ? SHORT_UNREACHABLE : distance);
+            }
+            packed[l] = null;
+        }
+        return wide;
+    }
+
+    /**
+     * Returns the distance from landmark l to vertex, or -1 if vertex cannot be reached.
+     */
+    private int from(int l, int vertex){
+        if (fromBytes != null){
+            int distance = fromBytes[l][vertex] & 0xff;
+            return distance == BYTE_UNREACHABLE ? -1 : distance;
+        }
+        int distance = fromShorts[l][vertex] & 0xffff;
+        return distance == SHORT_UNREACHABLE ? -1 : distance;
+    }
+
+    /**
+     * Returns the distance from vertex to landmark l, or -1 if landmark l cannot be reached.
+     */
+    private int to(int l, int vertex){
+        if (toBytes != null){
+            int distance = toBytes[l][vertex] & 0xff;
+            return distance == BYTE_UNREACHABLE ? -1 : distance;
+        }
+        int distance = toShorts[l][vertex] & 0xffff;
+        return distance == SHORT_UNREACHABLE ? -1 : distance;
+    }
+
+    /**
+     * Returns the number of the graph version the distances were computed on. The bounds
+     * are only valid for that version.
+     */
+    long getVersion(){
+        return version;
+    }
+
+    /**
+     * Returns the number of landmarks.
+     */
+    int numLandmarks(){
+        return landmarks.length;
+    }
+
+    /**
+     * Returns a lower bound on the distance from source to target, or INFINITE if the
+     * landmarks prove that target cannot be reached from source.
+     */
+    int lowerBound(int source, int target){
+        if (source == target){
+            return 0;
+        }
+        int bound = 0;
+        for (int l = 0; l < landmarks.length; l++){
+            int fromSource = from(l, source);
+            int fromTarget = from(l, target);
+            if (fromSource >= 0){
+                // the landmark reaches source, so it would reach target through source
+                if (fromTarget < 0){
+                    return INFINITE;
+                }
+                bound = Math.max(bound, fromTarget - fromSource);
+            }
+            int sourceTo = to(l, source);
+            int targetTo = to(l, target);
+            if (targetTo >= 0){
+                // target reaches the landmark, so source would reach it through target
+                if (sourceTo < 0){
+                    return INFINITE;
+                }
+                bound = Math.max(bound, sourceTo - targetTo);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Returns an upper bound on the distance from source to target, the length of the
+     * shortest route through a landmark, or INFINITE if no landmark route exists.
+     */
+    int upperBound(int source, int target){
+        if (source == target){
+            return 0;
+        }
+        int bound = INFINITE;
+        for (int l = 0; l < landmarks.length; l++){
+            int sourceTo = to(l, source);
+            int fromTarget = from(l, target);
+            if (sourceTo >= 0 && fromTarget >= 0){
+                bound = Math.min(bound, sourceTo + fromTarget);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * A* search from source to target guided by lowerBound(). Vertices the landmarks prove
+     * cannot reach target are never queued.
+     * @param graph graph the oracle was built for
+     * @param source starting vertex
+     * @param target ending vertex
+     * @param buffers scratch arrays for the search
+     * @return vertices on a shortest path in order, or an empty array if no path exists
+     */
+    int[] findPath(IntGraph graph, int source, int target, SearchBuffers buffers){
+        if (source == target){
+            return new int[] {source};
+        }
+        if (lowerBound(source, target) == INFINITE){
+            return new int[0];
+        }
+        buffers.startSearch();
+        int[] parent = buffers.parent;
+        int[] distance = buffers.distance;
+        NeighborCursor neighbors = buffers.cursor;
+        // min-heap of (estimated total length << 32 | vertex); stale entries are skipped when popped
+        long[] heap = new long[64];
+        int heapSize = 0;
+        // work counted for QueryMetrics
+        long verticesExpanded = 0;
+        long edgesScanned = 0;
+        int peakHeap = 1;
+
+        buffers.markVisited(source);
+        parent[source] = source;
+        distance[source] = 0;
+        heap[heapSize++] = ((long) lowerBound(source, target) << 32) | source;
+        while (heapSize > 0){
+            long top = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+            int vertex = (int) top;
+            int estimate = (int) (top >>> 32);
+            if (vertex == target){
+                buffers.recordWork(verticesExpanded, edgesScanned, peakHeap);
+                return PathFinder.readPath(parent, source, target);
+            }
+            // skips entries left behind when a shorter route to vertex was found
+            if (estimate != distance[vertex] + lowerBound(vertex, target)){
+                continue;
+            }
+            verticesExpanded++;
+            graph.getNeighbors(vertex, neighbors);
+            while (neighbors.hasNext()){
+                int neighbor = neighbors.next();
+                edgesScanned++;
+                int length = distance[vertex] + 1;
+                if (buffers.markVisited(neighbor) || length < distance[neighbor]){
+                    int remaining = lowerBound(neighbor, target);
+                    distance[neighbor] = length;
+                    parent[neighbor] = vertex;
+                    if (remaining == INFINITE){
+                        continue;
+                    }
+                    if (heapSize == heap.length){
+                        heap = java.util.Arrays.copyOf(heap, heapSize * 2);
+                    }
+                    heap[heapSize] = ((long) (length + remaining) << 32) | neighbor;
+                    siftUp(heap, heapSize++);
+                    peakHeap = Math.max(peakHeap, heapSize);
+                }
+            }
+        }
+        buffers.recordWork(verticesExpanded, edgesScanned, peakHeap);
+        return new int[0];
+    }
+
+    private static void siftUp(long[] heap, int index){
+        long entry = heap[index];
+        while (index > 0){
+            int parentIndex = (index - 1) >>> 1;
+            if (heap[parentIndex] <= entry){
+                break;
+            }
+            heap[index] = heap[parentIndex];
+            index = parentIndex;
+        }
+        heap[index] = entry;
+    }
+
+    private static void siftDown(long[] heap, int size){
+        if (size == 0){
+            return;
+        }
+        long entry = heap[0];
+        int index = 0;
+        while (true){
+            int child = 2 * index + 1;
+            if (child >= size){
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]){
+                child++;
+            }
+            if (heap[child] >= entry){
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = entry;
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative long values (nanoseconds, for latencies) with logarithmic
+ * buckets, in the style of HdrHistogram: values below 64 get a bucket each, and every
+ * power-of-two range above that is split into 32 equal buckets, so a value is known to
+ * within about 3% across the whole long range in under 2000 counters. Recording is one
+ * atomic increment and is safe from any number of threads.
+ */
+final class LatencyHistogram {
+    // each power-of-two range above 64 has 2^SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+    /**
+     * Counts one occurrence of value; negative values count as 0.
+     */
+    void record(long value){
+        counts.incrementAndGet(bucketOf(Math.max(0, value)));
+    }
+
+    /**
+     * Returns a copy of the bucket counts, for computing percentiles of a consistent set.
+     */
+    long[] snapshot(){
+        long[] copy = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++){
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Empties the histogram.
+     */
+    void reset(){
+        for (int i = 0; i < NUM_BUCKETS; i++){
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns the value at percentile (0 to 100) of the counts in snapshot: the highest
+     * value in the bucket holding that rank, or 0 if nothing was recorded.
+     */
+    static long valueAtPercentile(long[] snapshot, double percentile){
+        long total = 0;
+        for (long count : snapshot){
+            total += count;
+        }
+        if (total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < snapshot.length; bucket++){
+            seen += snapshot[bucket];
+            if (seen >= rank){
+                return highestValueIn(bucket);
+            }
+        }
+        return highestValueIn(snapshot.length - 1);
+    }
+
+    /**
+     * Returns the bucket for value: the value itself below 64, otherwise its top six bits
+     * offset by how far they were shifted.
+     */
+    static int bucketOf(long value){
+        if (value < 2 * SUB_BUCKETS){
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value that falls in bucket.
+     */
+    static long highestValueIn(int bucket){
+        if (bucket < 2 * SUB_BUCKETS){
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = bucket - ((long) shift << SUB_BUCKET_BITS);
+        long highest = ((mantissa + 1) << shift) - 1;
+        // the top bucket would overflow past Long.MAX_VALUE
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
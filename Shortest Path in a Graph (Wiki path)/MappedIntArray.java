@@ -0,0 +1,68 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only array of little-endian ints mapped straight from a file, so it is read from
+ * the operating system's page cache instead of being copied onto the heap first. One
+ * mapping is limited to 2GB, so the array is mapped in pages of 1GB.
+ */
+final class MappedIntArray {
+    private static final int PAGE_BITS = 28;
+    private static final int PAGE_INTS = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_INTS - 1;
+
+    private final IntBuffer[] pages;
+    private final long length;
+
+    private MappedIntArray(IntBuffer[] pages, long length){
+        this.pages = pages;
+        this.length = length;
+    }
+
+    /**
+     * Maps length ints of channel, starting at byte position. The mapping stays valid
+     * after the channel is closed.
+     */
+    static MappedIntArray map(FileChannel channel, long position, long length) throws IOException {
+        IntBuffer[] pages = new IntBuffer[(int) ((length + PAGE_INTS - 1) >>> PAGE_BITS)];
+        for (int p = 0; p < pages.length; p++){
+            long first = (long) p << PAGE_BITS;
+            long count = Math.min(PAGE_INTS, length - first);
+            pages[p] = channel.map(FileChannel.MapMode.READ_ONLY, position + first * 4, count * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return new MappedIntArray(pages, length);
+    }
+
+    /**
+     * Returns the number of ints.
+     */
+    long length(){
+        return length;
+    }
+
+    /**
+     * Returns the int at index.
+     */
+    int get(long index){
+        return pages[(int) (index >>> PAGE_BITS)].get((int) (index & PAGE_MASK));
+    }
+
+    /**
+     * Copies count ints starting at index into destination[offset] onwards.
+     */
+    void get(long index, int[] destination, int offset, int count){
+        while (count > 0){
+            IntBuffer page = pages[(int) (index >>> PAGE_BITS)];
+            int inPage = (int) (index & PAGE_MASK);
+            // a range can run over the end of a page into the next
+            int part = Math.min(count, PAGE_INTS - inPage);
+            page.get(inPage, destination, offset, part);
+            index += part;
+            offset += part;
+            count -= part;
+        }
+    }
+}
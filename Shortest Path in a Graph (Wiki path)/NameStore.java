@@ -0,0 +1,299 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Immutable store of article names. Every name is kept as UTF-8 bytes in one shared byte
+ * array, with an offsets array marking where each vertex's name starts, and names are
+ * found by an open-addressing hash table of vertex numbers. That is three primitive
+ * arrays instead of a String, an Integer and two map entries per article, and lookups
+ * can go straight from bytes, without building a String.
+ *
+ * The arrays are read through buffers, so a store can be served straight from a mapped
+ * GraphSnapshot file as well as from arrays on the heap. Only absolute reads are used,
+ * so any number of threads can read a store at once.
+ */
+public final class NameStore {
+    // UTF-8 bytes of every name, one after another
+    private final ByteBuffer bytes;
+    // offsets[v] is the index in bytes where the name of v starts; has size() + 1 entries
+    private final IntBuffer offsets;
+    // hash table of vertex number + 1, 0 for an empty slot; its length is a power of two
+    private final IntBuffer slots;
+
+    /**
+     * Constructs a NameStore directly from its arrays. The arrays are not copied.
+     * @param bytes UTF-8 bytes of every name
+     * @param offsets start of each vertex's name, plus one final entry equal to the bytes used
+     * @param slots hash table built by Builder.build()
+     */
+    NameStore(byte[] bytes, int[] offsets, int[] slots){
+        this(ByteBuffer.wrap(bytes), IntBuffer.wrap(offsets), IntBuffer.wrap(slots));
+    }
+
+    /**
+     * Constructs a NameStore that reads its arrays from buffers, such as views of a mapped
+     * file. The buffers are not copied, and their positions are never used.
+     */
+    NameStore(ByteBuffer bytes, IntBuffer offsets, IntBuffer slots){
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.slots = slots;
+    }
+
+    /**
+     * Returns a store where vertex v is called names[v], or has no name if names[v] is null.
+     */
+    public static NameStore of(String[] names){
+        Builder builder = new Builder();
+        for (String name : names){
+            builder.add(name);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of vertices, including those with no name.
+     */
+    public int size(){
+        return offsets.limit() - 1;
+    }
+
+    /**
+     * Returns the name of vertex, or null if it has none.
+     */
+    public String getName(int vertex){
+        if (vertex < 0 || vertex >= size()){
+            return null;
+        }
+        int length = offsets.get(vertex + 1) - offsets.get(vertex);
+        if (length == 0){
+            return null;
+        }
+        byte[] name = new byte[length];
+        bytes.get(offsets.get(vertex), name, 0, length);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the vertex called name, or -1 if there is none.
+     */
+    public int getVertex(String name){
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        return getVertex(encoded, 0, encoded.length);
+    }
+
+    /**
+     * Returns the vertex whose name is the UTF-8 bytes name[start, start + length), or -1
+     * if there is none.
+     */
+    public int getVertex(byte[] name, int start, int length){
+        if (length == 0){
+            return -1;
+        }
+        int mask = slots.limit() - 1;
+        for (int slot = hash(name, start, length) & mask; slots.get(slot) != 0; slot = (slot + 1) & mask){
+            int vertex = slots.get(slot) - 1;
+            if (nameEquals(vertex, name, start, length)){
+                return vertex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if vertex is called name[start, start + length).
+     */
+    private boolean nameEquals(int vertex, byte[] name, int start, int length){
+        int from = offsets.get(vertex);
+        if (offsets.get(vertex + 1) - from != length){
+            return false;
+        }
+        for (int i = 0; i < length; i++){
+            if (bytes.get(from + i) != name[start + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the same names with vertex v renumbered newId[v]. The hash table keeps its
+     * layout, since a name's slot depends only on the name, so lookups of a name that
+     * several vertices share still find the same vertex as before.
+     * @param newId new number of every vertex; a permutation of 0 to size() - 1
+     */
+    public NameStore relabel(int[] newId){
+        int numVertices = size();
+        int[] newOffsets = new int[numVertices + 1];
+        for (int v = 0; v < numVertices; v++){
+            newOffsets[newId[v] + 1] = offsets.get(v + 1) - offsets.get(v);
+        }
+        for (int v = 0; v < numVertices; v++){
+            newOffsets[v + 1] += newOffsets[v];
+        }
+        byte[] newBytes = new byte[numBytes()];
+        for (int v = 0; v < numVertices; v++){
+            bytes.get(offsets.get(v), newBytes, newOffsets[newId[v]], offsets.get(v + 1) - offsets.get(v));
+        }
+        int[] newSlots = new int[slots.limit()];
+        for (int slot = 0; slot < newSlots.length; slot++){
+            int entry = slots.get(slot);
+            newSlots[slot] = entry == 0 ? 0 : newId[entry - 1] + 1;
+        }
+        return new NameStore(newBytes, newOffsets, newSlots);
+    }
+
+    /**
+     * Returns a view of the name bytes in use, positioned at the first.
+     */
+    ByteBuffer bytesView(){
+        ByteBuffer view = bytes.duplicate();
+        view.position(0).limit(numBytes());
+        return view;
+    }
+
+    /**
+     * Returns a view of the offsets, positioned at the first.
+     */
+    IntBuffer offsetsView(){
+        return offsets.duplicate().clear();
+    }
+
+    /**
+     * Returns a view of the hash table, positioned at the first slot.
+     */
+    IntBuffer slotsView(){
+        return slots.duplicate().clear();
+    }
+
+    /**
+     * Returns the number of slots in the hash table.
+     */
+    int numSlots(){
+        return slots.limit();
+    }
+
+    /**
+     * Returns the number of name bytes in use.
+     */
+    int numBytes(){
+        return offsets.get(size());
+    }
+
+    /**
+     * FNV-1a hash of name[start, start + length), with the high bits folded down because
+     * the table only looks at the low ones.
+     */
+    static int hash(byte[] name, int start, int length){
+        int h = 0x811c9dc5;
+        for (int i = start; i < start + length; i++){
+            h = (h ^ (name[i] & 0xff)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Collects names for vertices 0, 1, 2, ... in order and packs them into a NameStore.
+     */
+    public static final class Builder {
+        private byte[] bytes;
+        private int[] offsets;
+        private int numVertices;
+
+        public Builder(){
+            bytes = new byte[1024];
+            offsets = new int[64];
+        }
+
+        /**
+         * Adds the next vertex, called name, or with no name if name is null.
+         * @return the vertex number
+         */
+        public int add(String name){
+            if (name == null){
+                return add(bytes, 0, 0);
+            }
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            return add(encoded, 0, encoded.length);
+        }
+
+        /**
+         * Adds the next vertex, whose name is the UTF-8 bytes name[start, start + length);
+         * a length of 0 means no name.
+         * @return the vertex number
+         */
+        public int add(byte[] name, int start, int length){
+            int used = reserve(length);
+            System.arraycopy(name, start, bytes, used, length);
+            return finishVertex(used + length);
+        }
+
+        /**
+         * Adds the next vertex with the same name as vertex in store.
+         * @return the vertex number
+         */
+        public int add(NameStore store, int vertex){
+            int from = store.offsets.get(vertex);
+            int length = store.offsets.get(vertex + 1) - from;
+            int used = reserve(length);
+            store.bytes.get(from, bytes, used, length);
+            return finishVertex(used + length);
+        }
+
+        /**
+         * Makes room for one more vertex with a name of length bytes and returns where
+         * the name goes.
+         */
+        private int reserve(int length){
+            int used = offsets[numVertices];
+            if (used + (long) length > Integer.MAX_VALUE - 8){
+                throw new IllegalStateException("Article names take more than 2GB");
+            }
+            if (used + length > bytes.length){
+                bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(used + length, bytes.length * 2L)));
+            }
+            if (numVertices + 2 > offsets.length){
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            return used;
+        }
+
+        /**
+         * Ends the name of the vertex being added at end and returns its number.
+         */
+        private int finishVertex(int end){
+            numVertices++;
+            offsets[numVertices] = end;
+            return numVertices - 1;
+        }
+
+        /**
+         * Returns a NameStore with every name added so far. When a name was added more
+         * than once, looking it up gives the last vertex with that name.
+         */
+        public NameStore build(){
+            byte[] packedBytes = Arrays.copyOf(bytes, offsets[numVertices]);
+            int[] packedOffsets = Arrays.copyOf(offsets, numVertices + 1);
+            // keeps the table at most half full so probe sequences stay short
+            int capacity = Integer.highestOneBit(Math.max(numVertices, 1) * 2 - 1) * 2;
+            int[] slots = new int[capacity];
+            NameStore store = new NameStore(packedBytes, packedOffsets, slots);
+            int mask = capacity - 1;
+            for (int vertex = 0; vertex < numVertices; vertex++){
+                int start = packedOffsets[vertex];
+                int length = packedOffsets[vertex + 1] - start;
+                if (length == 0){
+                    continue;
+                }
+                int slot = hash(packedBytes, start, length) & mask;
+                while (slots[slot] != 0 && !store.nameEquals(slots[slot] - 1, packedBytes, start, length)){
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = vertex + 1;
+            }
+            return store;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Reusable cursor over the neighbors of a single vertex. A graph either points
+ * the cursor straight at its own storage or decodes the neighbors into the
+ * cursor's scratch array, so a scan never allocates once the scratch array
+ * is large enough.
+ */
+public final class NeighborCursor {
+    // array being read, and the range of it holding the current neighbors
+    private int[] array;
+    private int position;
+    private int limit;
+    // space a graph can decode neighbors into
+    private int[] scratch;
+
+    /**
+     * Constructs an empty cursor.
+     */
+    public NeighborCursor(){
+        array = new int[0];
+        scratch = new int[16];
+    }
+
+    /**
+     * Points the cursor at array[start] to array[end - 1].
+     */
+    void reset(int[] array, int start, int end){
+        this.array = array;
+        this.position = start;
+        this.limit = end;
+    }
+
+    /**
+     * Returns a scratch array with room for at least capacity neighbors.
+     * The contents are only valid until the next call.
+     */
+    int[] getScratch(int capacity){
+        if (scratch.length < capacity){
+            scratch = new int[Math.max(capacity, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    /**
+     * Returns true if there are neighbors left to read.
+     */
+    public boolean hasNext(){
+        return position < limit;
+    }
+
+    /**
+     * Returns the next neighbor.
+     */
+    public int next(){
+        return array[position++];
+    }
+}
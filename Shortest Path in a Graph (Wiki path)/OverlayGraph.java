@@ -0,0 +1,290 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable graph made of a base graph plus replacement neighbor lists for the vertices
+ * that changed since the base was built. A vertex's replacement list, if it has one,
+ * completely overrides its base neighbors; vertices added after the base have no base
+ * neighbors at all. Changes go through an Editor, which leaves this graph untouched, so
+ * searches already running on it never see a half-applied change.
+ *
+ * The replacement lists are kept in a radix tree indexed by vertex number, 64 children per
+ * node. An Editor copies only the nodes on the paths to the vertices it changed and shares
+ * the rest with this graph, so an update costs a few hundred references per changed vertex
+ * however many replacement lists have built up since the last compaction.
+ */
+final class OverlayGraph implements IntGraph {
+    private static final int[] NO_NEIGHBORS = new int[0];
+    // bits of the vertex number used at each level of the tree
+    private static final int BITS = 6;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private final IntGraph base;
+    private final int numVertices;
+    private final long numEdges;
+    // tree of replacement lists: inner nodes hold child nodes, the bottom level holds
+    // int[] lists; null where no vertex in range has a list
+    private final Object[] root;
+    // the root's children split vertices by bits shift and up; the tree covers vertices
+    // below 1 << (shift + BITS)
+    private final int shift;
+    private final int size;
+    // number of edges held in replacement lists
+    private final long overlayEdges;
+
+    private OverlayGraph(IntGraph base, int numVertices, long numEdges, Object[] root, int shift, int size, long overlayEdges){
+        this.base = base;
+        this.numVertices = numVertices;
+        this.numEdges = numEdges;
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+        this.overlayEdges = overlayEdges;
+    }
+
+    /**
+     * Returns an overlay over base with no changes yet.
+     */
+    static OverlayGraph over(IntGraph base){
+        return new OverlayGraph(base, base.numVertices(), base.numEdges(), null, 0, 0, 0);
+    }
+
+    /**
+     * Returns the graph the changes are laid over.
+     */
+    IntGraph getBase(){
+        return base;
+    }
+
+    /**
+     * Returns the number of vertices with replacement lists.
+     */
+    int overlaySize(){
+        return size;
+    }
+
+    /**
+     * Returns the number of edges stored in replacement lists.
+     */
+    long overlayEdges(){
+        return overlayEdges;
+    }
+
+    public int numVertices(){
+        return numVertices;
+    }
+
+    public long numEdges(){
+        return numEdges;
+    }
+
+    public int getDegree(int vertex){
+        int[] list = find(vertex);
+        if (list != null){
+            return list.length;
+        }
+        return vertex < base.numVertices() ? base.getDegree(vertex) : 0;
+    }
+
+    public void getNeighbors(int vertex, NeighborCursor cursor){
+        int[] list = find(vertex);
+        if (list != null){
+            cursor.reset(list, 0, list.length);
+        } else if (vertex < base.numVertices()){
+            base.getNeighbors(vertex, cursor);
+        } else {
+            cursor.reset(NO_NEIGHBORS, 0, 0);
+        }
+    }
+
+    /**
+     * Returns the replacement list of vertex, or null if it has none.
+     */
+    private int[] find(int vertex){
+        if (root == null || (vertex >>> shift) >= WIDTH){
+            return null;
+        }
+        Object[] node = root;
+        for (int s = shift; s > 0; s -= BITS){
+            node = (Object[]) node[(vertex >>> s) & MASK];
+            if (node == null){
+                return null;
+            }
+        }
+        return (int[]) node[vertex & MASK];
+    }
+
+    /**
+     * Returns an Editor that starts from this graph.
+     */
+    Editor edit(){
+        return new Editor();
+    }
+
+    /**
+     * Collects changes to an OverlayGraph and turns them into a new OverlayGraph.
+     * Only one thread may use an Editor.
+     */
+    final class Editor {
+        private int editedVertices;
+        private long editedEdges;
+        // lists changed by this editor, kept growable until freeze()
+        private final Map<Integer,int[]> working;
+        private final Map<Integer,Integer> workingSizes;
+
+        private Editor(){
+            editedVertices = numVertices;
+            editedEdges = numEdges;
+            working = new HashMap<Integer,int[]>();
+            workingSizes = new HashMap<Integer,Integer>();
+        }
+
+        /**
+         * Returns the number of vertices, counting ones added by this editor.
+         */
+        int numVertices(){
+            return editedVertices;
+        }
+
+        /**
+         * Adds a vertex with no neighbors and returns its number.
+         */
+        int addVertex(){
+            int vertex = editedVertices++;
+            working.put(vertex, NO_NEIGHBORS);
+            workingSizes.put(vertex, 0);
+            return vertex;
+        }
+
+        /**
+         * Returns a copy of the current neighbors of vertex.
+         */
+        int[] getNeighbors(int vertex){
+            int[] list = load(vertex);
+            return java.util.Arrays.copyOf(list, workingSizes.get(vertex));
+        }
+
+        /**
+         * Appends neighbor to the neighbors of vertex.
+         */
+        void addNeighbor(int vertex, int neighbor){
+            int[] list = load(vertex);
+            int listSize = workingSizes.get(vertex);
+            if (listSize == list.length){
+                list = java.util.Arrays.copyOf(list, Math.max(4, listSize * 2));
+                working.put(vertex, list);
+            }
+            list[listSize] = neighbor;
+            workingSizes.put(vertex, listSize + 1);
+            editedEdges++;
+        }
+
+        /**
+         * Removes every occurrence of neighbor from the neighbors of vertex, keeping the
+         * others in order, and returns how many were removed.
+         */
+        int removeNeighbor(int vertex, int neighbor){
+            int[] list = load(vertex);
+            int listSize = workingSizes.get(vertex);
+            int kept = 0;
+            for (int i = 0; i < listSize; i++){
+                if (list[i] != neighbor){
+                    list[kept++] = list[i];
+                }
+            }
+            workingSizes.put(vertex, kept);
+            editedEdges -= listSize - kept;
+            return listSize - kept;
+        }
+
+        /**
+         * Removes all neighbors of vertex.
+         */
+        void clearNeighbors(int vertex){
+            load(vertex);
+            editedEdges -= workingSizes.get(vertex);
+            workingSizes.put(vertex, 0);
+        }
+
+        /**
+         * Returns the private working copy of the list of vertex, copying it in on first use.
+         */
+        private int[] load(int vertex){
+            if (vertex < 0 || vertex >= editedVertices){
+                throw new IndexOutOfBoundsException("No vertex " + vertex);
+            }
+            int[] list = working.get(vertex);
+            if (list == null){
+                list = vertex < OverlayGraph.this.numVertices ? copyNeighbors(vertex) : NO_NEIGHBORS;
+                working.put(vertex, list);
+                workingSizes.put(vertex, list.length);
+            }
+            return list;
+        }
+
+        private int[] copyNeighbors(int vertex){
+            int[] list = new int[OverlayGraph.this.getDegree(vertex)];
+            NeighborCursor cursor = new NeighborCursor();
+            OverlayGraph.this.getNeighbors(vertex, cursor);
+            for (int i = 0; cursor.hasNext(); i++){
+                list[i] = cursor.next();
+            }
+            return list;
+        }
+
+        /**
+         * Returns a new OverlayGraph with every change made through this editor.
+         */
+        OverlayGraph freeze(){
+            int newSize = size;
+            long newOverlayEdges = overlayEdges;
+            Object[] newRoot = root;
+            int newShift = shift;
+            // grows the tree upwards until it covers every vertex
+            while (editedVertices > 0 && ((editedVertices - 1) >>> newShift) >= WIDTH){
+                if (newRoot != null){
+                    Object[] grown = new Object[WIDTH];
+                    grown[0] = newRoot;
+                    newRoot = grown;
+                }
+                newShift += BITS;
+            }
+            // nodes made by this freeze, which can be changed in place
+            Set<Object[]> owned = Collections.newSetFromMap(new IdentityHashMap<Object[],Boolean>());
+            for (Map.Entry<Integer,int[]> entry : working.entrySet()){
+                int vertex = entry.getKey();
+                int[] list = java.util.Arrays.copyOf(entry.getValue(), workingSizes.get(vertex));
+                int[] previous = find(vertex);
+                if (previous == null){
+                    newSize++;
+                } else {
+                    newOverlayEdges -= previous.length;
+                }
+                newOverlayEdges += list.length;
+                newRoot = put(newRoot, newShift, vertex, list, owned);
+            }
+            return new OverlayGraph(base, editedVertices, editedEdges, newRoot, newShift, newSize, newOverlayEdges);
+        }
+    }
+
+    /**
+     * Returns node with list stored under vertex, copying node and the nodes below it on the
+     * way to vertex unless this freeze made them.
+     * @param node subtree whose children split vertices by bits shift and up, or null if empty
+     */
+    private static Object[] put(Object[] node, int shift, int vertex, int[] list, Set<Object[]> owned){
+        Object[] copy = node == null ? new Object[WIDTH] : owned.contains(node) ? node : node.clone();
+        owned.add(copy);
+        int index = (vertex >>> shift) & MASK;
+        if (shift == 0){
+            copy[index] = list;
+        } else {
+            copy[index] = put((Object[]) copy[index], shift - BITS, vertex, list, owned);
+        }
+        return copy;
+    }
+}
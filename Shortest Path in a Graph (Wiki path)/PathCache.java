@@ -0,0 +1,120 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, thread-safe cache of shortest paths keyed by (start vertex, end vertex).
+ * When full, the least recently used path is evicted. Cached paths are shared,
+ * so callers must not modify the arrays they get back.
+ *
+ * Every lookup and insert names the graph version it is for. The cache only holds
+ * paths for its current version, so a query still running on an older version can
+ * neither read nor store paths for the new one.
+ */
+final class PathCache {
+    private final int capacity;
+    // access-ordered, so iteration order runs from least to most recently used
+    private final LinkedHashMap<Long,int[]> paths;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    // graph version the cached paths belong to; only changed while holding the paths lock
+    private volatile long version;
+
+    /**
+     * Constructs an empty cache for graph version version that holds at most capacity
+     * paths. A capacity of 0 caches nothing.
+     */
+    PathCache(int capacity, long version){
+        if (capacity < 0){
+            throw new IllegalArgumentException("Cache capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.paths = new LinkedHashMap<Long,int[]>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long,int[]> eldest){
+                return size() > PathCache.this.capacity;
+            }
+        };
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.version = version;
+    }
+
+    /**
+     * Returns the cached path from start to end in graph version version, or null if it is not cached.
+     */
+    int[] get(long version, int start, int end){
+        int[] path = null;
+        if (version == this.version){
+            synchronized (paths){
+                path = paths.get(key(start, end));
+            }
+        }
+        if (path == null){
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return path;
+    }
+
+    /**
+     * Caches the path from start to end in graph version version, evicting the least
+     * recently used path if the cache is full. Does nothing if version is not current.
+     */
+    void put(long version, int start, int end, int[] path){
+        if (capacity == 0){
+            return;
+        }
+        synchronized (paths){
+            if (version == this.version){
+                paths.put(key(start, end), path);
+            }
+        }
+    }
+
+    /**
+     * Removes every cached path and makes version the current graph version.
+     * Must be called whenever the graph changes.
+     */
+    void invalidate(long version){
+        synchronized (paths){
+            paths.clear();
+            this.version = version;
+        }
+    }
+
+    /**
+     * Returns the largest number of paths the cache holds.
+     */
+    int getCapacity(){
+        return capacity;
+    }
+
+    /**
+     * Returns the number of paths currently cached.
+     */
+    int size(){
+        synchronized (paths){
+            return paths.size();
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a cached path.
+     */
+    long getHits(){
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that found nothing.
+     */
+    long getMisses(){
+        return misses.get();
+    }
+
+    private static Long key(int start, int end){
+        return Long.valueOf(((long) start << 32) | (end & 0xffffffffL));
+    }
+}
@@ -3,28 +3,57 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Queue;
 import java.util.List;
-import java.util.Deque;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.Random;
 import java.net.URLDecoder;
 import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
 * Class that find the shortest path and path length between two wikipedia articles.
 * If requested, this path goes through an intermediate article. 
 */
 public class PathFinder {
-    // wikiGraph stores articles and the links between them.
-    private UnweightedGraph wikiGraph;
-    // maps allows translation between vertex numbers and article names
-    private Map<Integer,String> vertexToName;
-    private Map<String,Integer> nameToVertex;
-    // stores the number of vertices
-    private int numberOfVertices;
+    // The current graph: the links between articles in both directions and the maps
+    // between vertex numbers and article names. A GraphVersion is never modified; updates
+    // publish a new one, so every query reads this field once and works on that version,
+    // and any number of threads can query while the graph is being updated.
+    private volatile GraphVersion version;
+    // held by writers only, so updates are applied one at a time
+    private final Object updateLock = new Object();
+    // background compaction of the update overlay; only touched while holding updateLock
+    private ExecutorService compactor;
+    private boolean compacting;
+    // updates applied while a background compaction runs, replayed onto its result; null
+    // when no compaction runs or its result is to be dropped
+    private List<GraphUpdate> updatesDuringCompaction;
+    // scratch arrays for searches; each query borrows its own set
+    private final SearchBufferPool searchBuffers;
+    // recently computed shortest paths, so repeated queries skip the search
+    private volatile PathCache pathCache;
+    // landmark distances for bounds and A* searches; null until buildLandmarks() is called
+    private volatile LandmarkOracle landmarks;
+    // strongly connected components for instant "no path" answers; null until buildReachabilityIndex() is called
+    private volatile ReachabilityIndex reachability;
+    // timings and search work of every query
+    private final QueryMetrics metrics = new QueryMetrics();
+    // number of paths kept in pathCache unless setPathCacheCapacity() says otherwise
+    private static final int DEFAULT_PATH_CACHE_CAPACITY = 10000;
+    // the overlay is compacted once it holds more than this many edges, plus 1/8 of the graph's
+    private static final int COMPACTION_MIN_EDGES = 4096;
 
     
     /**
@@ -34,11 +63,91 @@ public class PathFinder {
      * @param edgeFile name of the file with the edge names
      */
     public PathFinder(String nodeFile, String edgeFile){
-        // initializes instance variables
-        wikiGraph = new MysteryUnweightedGraphImplementation(true);
-        vertexToName = new HashMap<Integer,String>();
-        nameToVertex = new HashMap<String,Integer>();
-        numberOfVertices = 0;
+        this(nodeFile, edgeFile, VertexOrder.FILE);
+    }
+
+    /**
+     * Constructs a PathFinder like PathFinder(nodeFile, edgeFile), but numbers the vertices
+     * in the given order so searches read memory with better locality. Path lengths are
+     * the same in every order, and so are the paths of getShortestPath() and
+     * getShortestPathBidirectional(). The other searches may return a different path of the
+     * same length, landmarks may be picked differently, and the numbers used by
+     * getArticleName() differ.
+     * @param nodeFile name of the file with the node names
+     * @param edgeFile name of the file with the edge names
+     * @param order how to number the vertices
+     */
+    public PathFinder(String nodeFile, String edgeFile, VertexOrder order){
+        NameStore names = readNames(nodeFile);
+        // reads the links in parallel straight into the compressed sparse row graph
+        CsrGraph graph = null;
+        try {
+            graph = EdgeFileLoader.load(edgeFile, names);
+        } catch (IOException e){
+            System.err.println(e);
+            System.exit(1);
+        }
+        CsrGraph reverse = graph.reverse();
+        if (order != VertexOrder.FILE){
+            // relabels both directions rather than reversing again, so in-links keep their order too
+            int[] newId = order.newIds(graph, reverse);
+            graph = graph.relabel(newId);
+            reverse = reverse.relabel(newId);
+            names = names.relabel(newId);
+        }
+        this.version = new GraphVersion(0, graph, reverse, ArticleNames.of(names));
+        this.searchBuffers = new SearchBufferPool();
+        this.pathCache = new PathCache(DEFAULT_PATH_CACHE_CAPACITY, 0);
+    }
+
+    /**
+     * Constructs a PathFinder from graphs and names that are already loaded.
+     */
+    private PathFinder(IntGraph graph, IntGraph reverse, NameStore names){
+        this.version = new GraphVersion(0, graph, reverse, ArticleNames.of(names));
+        this.searchBuffers = new SearchBufferPool();
+        this.pathCache = new PathCache(DEFAULT_PATH_CACHE_CAPACITY, 0);
+    }
+
+    /**
+     * Constructs a PathFinder like PathFinder(nodeFile, edgeFile, order), but with the links
+     * gap-encoded in CompressedGraphs, as compressGraph() leaves them, from the start. The
+     * links are never held as int arrays: they are written to a temporary file of vertex
+     * pairs as they are parsed and encoded from there, so graphs whose int arrays do not fit
+     * in memory can be loaded and searched. The temporary file takes 8 bytes per link and
+     * is deleted before this returns. The BFS order follows links in increasing order here,
+     * so it can number vertices differently than the other constructors do.
+     * @param nodeFile name of the file with the node names
+     * @param edgeFile name of the file with the edge names
+     * @param order how to number the vertices
+     * @return PathFinder over the compressed graph
+     */
+    public static PathFinder loadCompressed(String nodeFile, String edgeFile, VertexOrder order){
+        NameStore names = readNames(nodeFile);
+        CompressedGraph[] graphs = null;
+        try {
+            graphs = EdgeFileLoader.loadCompressed(edgeFile, names);
+        } catch (IOException e){
+            System.err.println(e);
+            System.exit(1);
+        }
+        CompressedGraph graph = graphs[0];
+        CompressedGraph reverse = graphs[1];
+        if (order != VertexOrder.FILE){
+            int[] newId = order.newIds(graph, reverse);
+            graph = graph.relabel(newId);
+            reverse = reverse.relabel(newId);
+            names = names.relabel(newId);
+        }
+        return new PathFinder(graph, reverse, names);
+    }
+
+    /**
+     * Reads the article names of nodeFile, one per line, into a NameStore.
+     */
+    private static NameStore readNames(String nodeFile){
+        // collects the names into one compact store
+        NameStore.Builder vertexToName = new NameStore.Builder();
         
         File articles = new File(nodeFile);
         // Scans the file if the file path is correctly formatted.
@@ -59,12 +168,8 @@ public class PathFinder {
                 try {
                     // decodes the URL name
                     String readableString = java.net.URLDecoder.decode(s, "UTF-8");
-                    // updates graph and maps with new vertex
-                    int vertexNum = wikiGraph.addVertex();
-                    vertexToName.put(Integer.valueOf(vertexNum), readableString);
-                    nameToVertex.put(readableString, Integer.valueOf(vertexNum));
-                    // number of vertices increase for each new vertex
-                    numberOfVertices++;
+                    // adds the new vertex to the name store
+                    vertexToName.add(readableString);
                 } catch (UnsupportedEncodingException e){
                     System.err.println(e);
                     System.exit(1);
@@ -72,40 +177,206 @@ public class PathFinder {
             }
         }
         
-        File links = new File(edgeFile);
-        // Scans the file if the file path is correctly formatted.
-        // If not, returns an error message.
-        Scanner scanner2 = null;
+        return vertexToName.build();
+    }
+
+    /**
+     * Constructs a PathFinder from a snapshot written by writeSnapshot() or by
+     * GraphSnapshot's main method. No text parsing or URL decoding is needed.
+     * @param snapshotFile name of the snapshot file
+     * @return PathFinder over the snapshot's graph
+     */
+    public static PathFinder fromSnapshot(String snapshotFile){
+        GraphSnapshot snapshot = null;
         try {
-            scanner2 = new Scanner(links);
-        } catch (FileNotFoundException e){
+            snapshot = GraphSnapshot.read(snapshotFile);
+        } catch (IOException e){
             System.err.println(e);
             System.exit(1);
         }
-        
-        // creates edges between articles
-        while(scanner2.hasNextLine()){
-            String s = scanner2.nextLine();
-            // skips comments and empty lines
-            if (!s.contains("#") && !s.isEmpty()){
-                try {
-                    // splits articles into an array
-                    String[] articleNames= s.split("	");
-                    // decodes the URL name
-                    String readableString1 = java.net.URLDecoder.decode(articleNames[0], "UTF-8");
-                    String readableString2 = java.net.URLDecoder.decode(articleNames[1], "UTF-8");
-                    // updates graph and maps with new vertex
-                    int vertex1 = nameToVertex.get(readableString1);
-                    int vertex2 = nameToVertex.get(readableString2);
-                    wikiGraph.addEdge(vertex1, vertex2);
-                } catch (UnsupportedEncodingException e){
-                    System.err.println(e);
-                    System.exit(1);
-                }
-                
+        return new PathFinder(snapshot.getGraph(), snapshot.getReverseGraph(), snapshot.getNames());
+    }
+
+    /**
+     * Writes this PathFinder's graph and article names to snapshotFile, so later runs
+     * can start with fromSnapshot() instead of reading the text files.
+     * @param snapshotFile name of the snapshot file to write
+     */
+    public void writeSnapshot(String snapshotFile){
+        GraphVersion compacted = version.compact();
+        try {
+            GraphSnapshot.write(snapshotFile, compacted.graph, compacted.reverseGraph, compacted.names.getBase());
+        } catch (IOException e){
+            System.err.println(e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replaces the path cache with an empty one that holds at most capacity paths.
+     * A capacity of 0 turns caching off.
+     * @param capacity maximum number of cached paths
+     */
+    public void setPathCacheCapacity(int capacity){
+        synchronized (updateLock){
+            pathCache = new PathCache(capacity, version.number);
+        }
+    }
+
+    /**
+     * Returns how many shortest path queries were answered from the path cache.
+     */
+    public long getPathCacheHits(){
+        return pathCache.getHits();
+    }
+
+    /**
+     * Returns how many shortest path queries had to search the graph.
+     */
+    public long getPathCacheMisses(){
+        return pathCache.getMisses();
+    }
+
+    /**
+     * Returns the metrics of the queries answered so far: per query type, the number of
+     * queries, latency percentiles and how many vertices and edges their searches touched.
+     * Call registerMBean() on the result to publish them through JMX as well.
+     */
+    public QueryMetrics getQueryMetrics(){
+        return metrics;
+    }
+
+    /**
+     * Applies every change in update to the graph at once. Queries already running finish on
+     * the graph as it was; queries started afterwards see all of the changes. Updates are
+     * applied one at a time and never wait for queries. Removed articles keep their vertex
+     * number, which is not reused.
+     * @param update articles and links to add and remove, applied in the order they were added
+     * @throws IllegalArgumentException if a change names a missing article, or adds one that
+     *      exists; the graph is then left unchanged
+     */
+    public void applyUpdate(GraphUpdate update){
+        synchronized (updateLock){
+            GraphVersion updated = version.apply(update, version.number + 1);
+            if (updatesDuringCompaction != null){
+                updatesDuringCompaction.add(update);
+            }
+            // paths cached for older versions can no longer be returned
+            pathCache.invalidate(updated.number);
+            version = updated;
+            if (!compacting && needsCompaction(updated)){
+                startCompaction();
             }
         }
     }
+
+    /**
+     * Adds an article with no links.
+     * @param name name of the new article
+     * @throws IllegalArgumentException if name is empty or already in use
+     */
+    public void addArticle(String name){
+        applyUpdate(new GraphUpdate().addArticle(name));
+    }
+
+    /**
+     * Removes an article and every link to or from it.
+     * @param name name of the article to remove
+     */
+    public void removeArticle(String name){
+        applyUpdate(new GraphUpdate().removeArticle(name));
+    }
+
+    /**
+     * Adds a link from article from to article to.
+     */
+    public void addLink(String from, String to){
+        applyUpdate(new GraphUpdate().addLink(from, to));
+    }
+
+    /**
+     * Removes the links from article from to article to.
+     */
+    public void removeLink(String from, String to){
+        applyUpdate(new GraphUpdate().removeLink(from, to));
+    }
+
+    /**
+     * Folds every update so far into the compact graph layout now, instead of waiting for
+     * the background compaction. Queries keep running meanwhile.
+     */
+    public void compact(){
+        synchronized (updateLock){
+            version = version.compact();
+        }
+    }
+
+    /**
+     * Re-encodes the graph in both directions as a CompressedGraph, with sorted, gap-encoded
+     * neighbor lists that usually take a byte or two per link instead of four. Searches
+     * decode lists as they go, so they are somewhat slower. The graph is copied from the
+     * current layout, which stays in memory until the copy is done, so this lowers memory
+     * use afterwards but not at its peak; loadCompressed() loads a graph compressed without
+     * ever building the int arrays. Path lengths are unchanged; when there are several
+     * shortest paths, a different one may be returned, since neighbors are visited in
+     * increasing order. Later updates and compactions keep the graph compressed.
+     */
+    public void compressGraph(){
+        synchronized (updateLock){
+            version = version.compress();
+            // drops the result of a running background compaction, which would not be compressed
+            updatesDuringCompaction = null;
+        }
+    }
+
+    /**
+     * Returns true once the updates held outside the compact layout are big enough to slow
+     * searches down.
+     */
+    private static boolean needsCompaction(GraphVersion g){
+        long baseEdges = g.graph instanceof OverlayGraph ? ((OverlayGraph) g.graph).getBase().numEdges() : g.graph.numEdges();
+        return g.overlayEdges() > baseEdges / 8 + COMPACTION_MIN_EDGES
+            || g.overlayVertices() > g.numVertices() / 8 + COMPACTION_MIN_EDGES;
+    }
+
+    /**
+     * Compacts the current version on a background thread. Updates applied while it runs are
+     * logged and replayed onto the compacted graph before it is published. Must be called
+     * while holding updateLock.
+     */
+    private void startCompaction(){
+        if (compactor == null){
+            compactor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "PathFinder-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        GraphVersion start = version;
+        compacting = true;
+        updatesDuringCompaction = new ArrayList<GraphUpdate>();
+        compactor.execute(() -> {
+            GraphVersion compacted = null;
+            try {
+                compacted = start.compact();
+            } catch (RuntimeException | OutOfMemoryError e){
+                System.err.println("Compaction failed: " + e);
+            }
+            synchronized (updateLock){
+                // no update log means compressGraph() replaced the graph meanwhile
+                if (compacted != null && updatesDuringCompaction != null){
+                    GraphVersion current = version;
+                    // the logged updates were valid on top of start, so they are on compacted too
+                    for (GraphUpdate update : updatesDuringCompaction){
+                        compacted = compacted.apply(update, compacted.number + 1);
+                    }
+                    version = compacted.renumber(current.number);
+                }
+                compacting = false;
+                updatesDuringCompaction = null;
+            }
+        });
+    }
     
 
     /**
@@ -116,13 +387,311 @@ public class PathFinder {
      * @return length of shortest path
      */
     public int getShortestPathLength(String node1, String node2){
-        List<String> pathList = this.getShortestPath(node1, node2);
-        // path length equals number of articles minus 1
-        return (pathList.size() - 1);
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            // the landmarks can sometimes settle the length without a search
+            GraphVersion g = version;
+            LandmarkOracle oracle = landmarks;
+            if (oracle != null && oracle.getVersion() == g.number){
+                int initialVertex = vertexOf(g, node1);
+                int finalVertex = vertexOf(g, node2);
+                int lowerBound = oracle.lowerBound(initialVertex, finalVertex);
+                if (lowerBound == LandmarkOracle.INFINITE){
+                    return -1;
+                }
+                if (lowerBound == oracle.upperBound(initialVertex, finalVertex)){
+                    return lowerBound;
+                }
+            }
+            int[] path = findCachedPath(g, vertexOf(g, node1), vertexOf(g, node2), sample);
+            // path length equals number of articles minus 1
+            return (path.length - 1);
+        } finally {
+            metrics.record(QueryMetrics.QueryType.PATH_LENGTH, sample);
+        }
     }
         
     
     
+    /**
+     * Returns the shortest path length for many pairs at once: result[i] is the length of
+     * the shortest path from sources[i] to targets[i], -1 if no path exists, or 0 if the two
+     * are the same. Pairs are grouped by source so each distinct source is searched only
+     * once, and the groups are spread over the common fork-join pool.
+     * @param sources names of the starting article nodes
+     * @param targets names of the ending article nodes, one per source
+     * @return length of each pair's shortest path
+     */
+    public int[] getShortestPathLengths(String[] sources, String[] targets){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            if (sources.length != targets.length){
+                throw new IllegalArgumentException("Got " + sources.length + " sources but " + targets.length + " targets");
+            }
+            GraphVersion g = version;
+            int numPairs = sources.length;
+            int[] sourceVertices = new int[numPairs];
+            int[] targetVertices = new int[numPairs];
+            // packs (source, pair index) into longs so one sort groups the pairs by source
+            long[] order = new long[numPairs];
+            for (int i = 0; i < numPairs; i++){
+                sourceVertices[i] = vertexOf(g, sources[i]);
+                targetVertices[i] = vertexOf(g, targets[i]);
+                order[i] = ((long) sourceVertices[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            // groupStart[g] is the first position in order of group g; one extra entry marks the end
+            int[] groupStart = new int[numPairs + 1];
+            int numGroups = 0;
+            for (int i = 0; i < numPairs; i++){
+                if (i == 0 || (order[i] >>> 32) != (order[i - 1] >>> 32)){
+                    groupStart[numGroups++] = i;
+                }
+            }
+            groupStart[numGroups] = numPairs;
+
+            int[] lengths = new int[numPairs];
+            ReachabilityIndex index = reachabilityFor(g);
+            runInParallel(g, numGroups, sample, (group, buffers) -> {
+                int from = groupStart[group];
+                int to = groupStart[group + 1];
+                int source = (int) (order[from] >>> 32);
+                // leaves out targets that certainly cannot be reached, which would otherwise
+                // keep the search going over everything reachable from source
+                int[] groupTargets = new int[to - from];
+                int numTargets = 0;
+                for (int i = from; i < to; i++){
+                    int target = targetVertices[(int) order[i]];
+                    if (index == null || index.canReach(source, target, buffers)){
+                        groupTargets[numTargets++] = target;
+                    }
+                }
+                if (numTargets == 0){
+                    for (int i = from; i < to; i++){
+                        lengths[(int) order[i]] = -1;
+                    }
+                    return;
+                }
+                searchDistances(g.graph, source, Arrays.copyOf(groupTargets, numTargets), buffers);
+                for (int i = from; i < to; i++){
+                    int target = targetVertices[(int) order[i]];
+                    lengths[(int) order[i]] = buffers.isVisited(target) ? buffers.distance[target] : -1;
+                }
+            });
+            return lengths;
+        } finally {
+            metrics.record(QueryMetrics.QueryType.PATH_LENGTHS, sample);
+        }
+    }
+
+    /**
+     * Adds the work recorded in buffers to sample and returns them to the pool.
+     */
+    private void release(SearchBuffers buffers, QueryMetrics.Sample sample){
+        sample.addWork(buffers);
+        searchBuffers.release(buffers);
+    }
+
+    /**
+     * A unit of search work, numbered item, run with a borrowed set of buffers.
+     */
+    private interface SearchTask {
+        void run(int item, SearchBuffers buffers);
+    }
+
+    /**
+     * Runs task for items 0 to numItems - 1 on the common fork-join pool. Each worker
+     * borrows one set of buffers sized for g and claims items until none are left. The
+     * work of every worker is added to sample.
+     */
+    private void runInParallel(GraphVersion g, int numItems, QueryMetrics.Sample sample, SearchTask task){
+        AtomicInteger nextItem = new AtomicInteger();
+        Runnable worker = () -> {
+            SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+            try {
+                int item;
+                while ((item = nextItem.getAndIncrement()) < numItems){
+                    task.run(item, buffers);
+                }
+            } finally {
+                release(buffers, sample);
+            }
+        };
+        int numWorkers = Math.min(numItems, ForkJoinPool.getCommonPoolParallelism());
+        if (numWorkers <= 1){
+            worker.run();
+            return;
+        }
+        ForkJoinTask<?>[] workers = new ForkJoinTask<?>[numWorkers];
+        for (int w = 0; w < numWorkers; w++){
+            workers[w] = ForkJoinPool.commonPool().submit(worker);
+        }
+        for (ForkJoinTask<?> running : workers){
+            running.join();
+        }
+    }
+
+    /**
+     * Returns the length of the shortest path from node to every article: distances[v] is
+     * the distance to the article with vertex number v (see getArticleName), or -1 if it
+     * cannot be reached. Runs one direction-optimizing search over the whole graph.
+     * @param node name of the starting article node
+     * @return distance to each vertex
+     */
+    public int[] getDistancesFrom(String node){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            int source = vertexOf(g, node);
+            SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+            try {
+                int reached = buffers.getDirectionOptimizing().search(g.graph, g.reverseGraph, source, -1, buffers.parent, buffers.distance);
+                int[] distances = new int[g.numVertices()];
+                Arrays.fill(distances, -1);
+                for (int i = 0; i < reached; i++){
+                    int vertex = buffers.queue[i];
+                    distances[vertex] = buffers.distance[vertex];
+                }
+                return distances;
+            } finally {
+                release(buffers, sample);
+            }
+        } finally {
+            metrics.record(QueryMetrics.QueryType.DISTANCES_FROM, sample);
+        }
+    }
+
+    /**
+     * Estimates eccentricities and the diameter of the graph from a random sample of
+     * articles. The eccentricity of an article is the distance to the farthest article it
+     * can reach. The sampled searches run in parallel on all cores.
+     * @param numSamples number of articles to sample; capped at the number of articles
+     * @param seed seed for choosing the sample, so estimates can be repeated
+     * @return eccentricity of each sampled article and the resulting diameter estimate
+     */
+    public EccentricityEstimate estimateEccentricity(int numSamples, long seed){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            int[] sources = sampleVertices(g, numSamples, new Random(seed));
+            int[] eccentricities = new int[sources.length];
+            int[] reachable = new int[sources.length];
+            runInParallel(g, sources.length, sample, (item, buffers) -> {
+                int reached = buffers.getDirectionOptimizing().search(g.graph, g.reverseGraph, sources[item], -1, buffers.parent, buffers.distance);
+                reachable[item] = reached;
+                // the search leaves the reached vertices in order of distance
+                eccentricities[item] = buffers.distance[buffers.queue[reached - 1]];
+            });
+            String[] names = new String[sources.length];
+            for (int i = 0; i < sources.length; i++){
+                names[i] = g.names.getName(sources[i]);
+            }
+            return new EccentricityEstimate(names, eccentricities, reachable);
+        } finally {
+            metrics.record(QueryMetrics.QueryType.ECCENTRICITY, sample);
+        }
+    }
+
+    /**
+     * Picks up to count distinct articles of g uniformly at random, skipping the vertex
+     * numbers of removed articles.
+     */
+    private int[] sampleVertices(GraphVersion g, int count, Random rng){
+        int numVertices = g.numVertices();
+        // partial Fisher-Yates shuffle, tracking only the swapped positions
+        Map<Integer,Integer> swapped = new HashMap<Integer,Integer>();
+        int[] sample = new int[Math.min(count, numVertices)];
+        int sampled = 0;
+        for (int i = 0; i < numVertices && sampled < sample.length; i++){
+            int j = i + rng.nextInt(numVertices - i);
+            int atJ = swapped.getOrDefault(j, j);
+            int atI = swapped.getOrDefault(i, i);
+            swapped.put(j, atI);
+            if (g.names.getName(atJ) != null){
+                sample[sampled++] = atJ;
+            }
+        }
+        return Arrays.copyOf(sample, sampled);
+    }
+
+    /**
+     * Returns the number of vertex numbers in use. Vertex numbers run from 0 to this minus 1;
+     * numbers of removed articles are not reused, so this counts them too.
+     */
+    public int getNumberOfArticles(){
+        return version.numVertices();
+    }
+
+    /**
+     * Returns the name of the article with vertex number vertex, or null if it was removed.
+     */
+    public String getArticleName(int vertex){
+        return version.names.getName(vertex);
+    }
+
+    /**
+     * Returns the vertex number of the article called name in g.
+     * @throws IllegalArgumentException if g has no such article
+     */
+    private static int vertexOf(GraphVersion g, String name){
+        int vertex = g.names.getVertex(name);
+        if (vertex < 0){
+            throw new IllegalArgumentException("No article named " + name);
+        }
+        return vertex;
+    }
+
+    /**
+     * Breadth-first search from source that records distances, one level at a time, and stops
+     * after the first level in which every vertex in targets has been reached.
+     * Afterwards, buffers.isVisited(v) tells whether v was reached and buffers.distance[v] how far it is.
+     * @param graph graph to search
+     * @param source starting vertex
+     * @param targets vertices the caller needs distances for; null to search everything reachable
+     * @param buffers scratch arrays for the search
+     */
+    private void searchDistances(IntGraph graph, int source, int[] targets, SearchBuffers buffers){
+        buffers.startSearch();
+        int[] queue = buffers.queue;
+        int[] distance = buffers.distance;
+        NeighborCursor neighbors = buffers.cursor;
+        int head = 0;
+        int tail = 0;
+        buffers.markVisited(source);
+        distance[source] = 0;
+        queue[tail++] = source;
+        // targets before this index have all been reached
+        int targetsReached = 0;
+        // work counted for QueryMetrics
+        long edgesScanned = 0;
+        int peakFrontier = 1;
+        while (head < tail){
+            if (targets != null){
+                while (targetsReached < targets.length && buffers.isVisited(targets[targetsReached])){
+                    targetsReached++;
+                }
+                if (targetsReached == targets.length){
+                    break;
+                }
+            }
+            peakFrontier = Math.max(peakFrontier, tail - head);
+            int levelEnd = tail;
+            while (head < levelEnd){
+                int vertex = queue[head++];
+                graph.getNeighbors(vertex, neighbors);
+                while (neighbors.hasNext()){
+                    int neighbor = neighbors.next();
+                    edgesScanned++;
+                    if (buffers.markVisited(neighbor)){
+                        distance[neighbor] = distance[vertex] + 1;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        buffers.recordWork(head, edgesScanned, peakFrontier);
+    }
+
     /**
      * Returns a shortest path from node1 to node2, represented as list that has node1 at
      * position 0, node2 in the final position, and the names of each node on the path
@@ -133,101 +702,547 @@ public class PathFinder {
      * @return list of the names of nodes on the shortest path
      */
     public List<String> getShortestPath(String node1, String node2){
-        // Queue is for breadth-first traversal algorithm
-        Queue<int[]> vertexQueue = new ArrayDeque<int[]>();
-        // creates a stack for vertices visited in traversal
-        Deque<int[]> visitedVertices = new ArrayDeque<int[]>();
-        // list that stores all visited vertex number
-        List<Integer> visitedVerticesInt = new ArrayList<Integer>();
-        // boolean that indicates whether path exists
-        boolean pathExists = false;
-        // list stores article names along the path 
-        List<String> pathList = new ArrayList<String>();
-        
-        int initialVertex = nameToVertex.get(node1);
-        int finalVertex = nameToVertex.get(node2);
-        
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            int initialVertex = vertexOf(g, node1);
+            int finalVertex = vertexOf(g, node2);
+            return toNames(g, findCachedPath(g, initialVertex, finalVertex, sample));
+        } finally {
+            metrics.record(QueryMetrics.QueryType.PATH, sample);
+        }
+    }
+
+    /**
+     * Returns the shortest path in g from initialVertex to finalVertex, from the path cache
+     * if it is there and from a new search otherwise. The returned array must not be modified.
+     * The search's work is added to sample.
+     */
+    private int[] findCachedPath(GraphVersion g, int initialVertex, int finalVertex, QueryMetrics.Sample sample){
+        PathCache cache = pathCache;
+        int[] path = cache.get(g.number, initialVertex, finalVertex);
+        if (path == null){
+            SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+            try {
+                path = findPath(g.graph, initialVertex, finalVertex, reachabilityFor(g), buffers);
+            } finally {
+                release(buffers, sample);
+            }
+            cache.put(g.number, initialVertex, finalVertex, path);
+        }
+        return path;
+    }
+
+    /**
+     * Breadth-first search from initialVertex that stops as soon as finalVertex is reached.
+     * Visited vertices are tracked with epoch stamps and the path is read back through
+     * the parent array, so the search is linear in the number of edges it scans.
+     * With a reachability index, unconnected pairs are answered without searching the graph,
+     * and vertices that cannot reach finalVertex are never expanded. Those are never on a
+     * path to finalVertex, so the path found is the same as without the index.
+     * @param graph graph to search
+     * @param initialVertex starting vertex
+     * @param finalVertex ending vertex
+     * @param reachability index for graph, or null to search without one
+     * @param buffers scratch arrays for the search
+     * @return vertices on the path in order, or an empty array if no path exists
+     */
+    private int[] findPath(IntGraph graph, int initialVertex, int finalVertex, ReachabilityIndex reachability, SearchBuffers buffers){
         // if the starting vertex and final vertex are the same, skips traversal algorithm
         if (initialVertex == finalVertex){
-            pathExists = true;
+            return new int[] {initialVertex};
         }
+        if (reachability != null && !reachability.canReach(initialVertex, finalVertex, buffers)){
+            return new int[0];
+        }
+        buffers.startSearch();
+        int[] parent = buffers.parent;
+        int[] queue = buffers.queue;
+        NeighborCursor neighbors = buffers.cursor;
+        int head = 0;
+        int tail = 0;
+        // boolean that indicates whether path exists
+        boolean pathExists = false;
+        // work counted for QueryMetrics
+        long edgesScanned = 0;
+        int peakFrontier = 1;
         
-        int initialPathLength = 0;
-        // stores the following information in an array:
-        // [current vertex, path length, previous vertex]
-        int[] initialVertexArray = new int[3];
-        initialVertexArray[0] = initialVertex;
-        initialVertexArray[1] = initialPathLength;
-        initialVertexArray[2] = initialVertex;
-        
-        // adds initial vertex to traversal queue, visited array
-        vertexQueue.add(initialVertexArray);
-        visitedVertices.push(initialVertexArray);
+        // adds initial vertex to traversal queue, marks it visited
+        buffers.markVisited(initialVertex);
+        parent[initialVertex] = initialVertex;
+        queue[tail++] = initialVertex;
         
         // while we haven't found the path, use breadth-first traversal to find final article
-        while (!pathExists && !vertexQueue.isEmpty()){
-            // gets vertex array from queue
-            int[] currentArray = vertexQueue.poll();
-            // gets current vertex number and path length from the array
-            int frontVertexNumber = currentArray[0]; 
-            int currentPathLength = currentArray[1];
-            
-            // gets neighbors of current vertex
-            Iterable<Integer> neighbors = wikiGraph.getNeighbors(frontVertexNumber);
-          
-            // for each unvisited neighbor, compare characteristics to current vertex
-            for (int neighbor : neighbors){
-                if ((!pathExists) && (!visitedVerticesInt.contains(neighbor))){
-                    // creates an array for the neighbor's characteristics
-                    int[] neighborArray = new int[3];
-                    neighborArray[0] = neighbor;
-                    neighborArray[1] = currentPathLength + 1;
-                    neighborArray[2] = frontVertexNumber;
-                    // adds to visited vertex stack, traversal queue, and vertex number list
-                    visitedVertices.push(neighborArray); 
-                    vertexQueue.add(neighborArray);
-                    visitedVerticesInt.add(neighbor);
-                    
-                    // if the neighbor is the final article, set pathExists to true, exiting the loop
+        while (!pathExists && head < tail){
+            peakFrontier = Math.max(peakFrontier, tail - head);
+            int frontVertexNumber = queue[head++];
+            graph.getNeighbors(frontVertexNumber, neighbors);
+            // for each unvisited neighbor, record where it was reached from
+            while (neighbors.hasNext()){
+                int neighbor = neighbors.next();
+                edgesScanned++;
+                if (buffers.markVisited(neighbor)){
+                    parent[neighbor] = frontVertexNumber;
+                    // if the neighbor is the final article, stop the search
                     if (neighbor == finalVertex){
                         pathExists = true;
+                        break;
+                    }
+                    if (reachability == null || reachability.mayReach(neighbor, finalVertex)){
+                        queue[tail++] = neighbor;
                     }
                 }
             }
         }
+        buffers.recordWork(head, edgesScanned, peakFrontier);
         
-        // if we have a path, place articles along the path in a list
-        if (pathExists){
-            // gets characteristics of final vertex (on top of the stack)
-            int[] finalVertexArray = visitedVertices.pop();
-            int vertexNumber = finalVertexArray[0];
-            int lengthToVertex = finalVertexArray[1];
-            int previousVertexNumber = finalVertexArray[2];
-            String vertexString = vertexToName.get(vertexNumber);
-            // adds final vertex to the path list
-            pathList.add(vertexString);
-            
-            // for each vertex in the stack
-            while(!visitedVertices.isEmpty()){
-                // get characteristics
-                int[] currentArray = visitedVertices.pop();
-                int currentVertexNumber = currentArray[0];
-                int currentLengthToVertex = currentArray[1];
-                
-                // if the current vertex number matches the previous number for the last and
-                // the length stored by the vertex is one less than the last,
-                // then update the characteristics to be compared and adds it to the list
-                if ((currentVertexNumber == previousVertexNumber) && (currentLengthToVertex == (lengthToVertex - 1))){
-                    vertexNumber = currentVertexNumber;
-                    lengthToVertex--;
-                    previousVertexNumber = currentArray[2];
-                    vertexString = vertexToName.get(vertexNumber);
-                    pathList.add(0, vertexString);
+        if (!pathExists){
+            return new int[0];
+        }
+        return readPath(parent, initialVertex, finalVertex);
+    }
+
+    /**
+     * Returns a shortest path from node1 to node2 found by searching forwards from node1
+     * and backwards from node2 at the same time. The path has the same length as the one
+     * from getShortestPath, but may pass through different articles when several
+     * shortest paths exist. If no path exists, returns an empty list.
+     * @param node1 name of the starting article node
+     * @param node2 name of the ending article node
+     * @return list of the names of nodes on the shortest path
+     */
+    public List<String> getShortestPathBidirectional(String node1, String node2){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            int initialVertex = vertexOf(g, node1);
+            int finalVertex = vertexOf(g, node2);
+            SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+            try {
+                return toNames(g, findPathBidirectional(g, initialVertex, finalVertex, reachabilityFor(g), buffers));
+            } finally {
+                release(buffers, sample);
+            }
+        } finally {
+            metrics.record(QueryMetrics.QueryType.BIDIRECTIONAL, sample);
+        }
+    }
+
+    /**
+     * Precomputes distances to and from numLandmarks landmark articles. Afterwards
+     * getShortestPathLengthBounds() answers instantly, getShortestPathAStar() can search
+     * exactly with far fewer steps, and getShortestPathLength() skips its search when the
+     * bounds already settle the answer. Each landmark costs two searches over the whole
+     * graph and two bytes per article. Any update to the graph retires the landmarks, so
+     * call this again after updating.
+     * @param numLandmarks number of landmark articles to pick
+     */
+    public void buildLandmarks(int numLandmarks){
+        GraphVersion g = version;
+        SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+        try {
+            landmarks = LandmarkOracle.build(g.graph, g.reverseGraph, numLandmarks, buffers, g.number);
+        } finally {
+            searchBuffers.release(buffers);
+        }
+    }
+
+    /**
+     * Finds the strongly connected components of the graph and indexes which components
+     * can reach which. Afterwards, shortest path queries answer pairs with no path by
+     * walking the much smaller graph of components instead of searching everything
+     * reachable from the start, and getShortestPath() skips articles that cannot lead to
+     * the target. Costs one pass over the graph, about 4 bytes per article and 4 bytes per
+     * link between components. Any update to the graph retires the index, so call this
+     * again after updating.
+     */
+    public void buildReachabilityIndex(){
+        GraphVersion g = version;
+        reachability = ReachabilityIndex.build(g.graph, g.number);
+    }
+
+    /**
+     * Returns the number of strongly connected components found by buildReachabilityIndex(),
+     * or -1 if there is no index for the current graph.
+     */
+    public int getNumberOfComponents(){
+        ReachabilityIndex index = reachabilityFor(version);
+        return index == null ? -1 : index.numComponents();
+    }
+
+    /**
+     * Returns the reachability index if it was built for g, otherwise null.
+     */
+    private ReachabilityIndex reachabilityFor(GraphVersion g){
+        ReachabilityIndex index = reachability;
+        return index != null && index.getVersion() == g.number ? index : null;
+    }
+
+    /**
+     * Returns bounds on the shortest path length from node1 to node2 using the landmarks
+     * from buildLandmarks(), without searching. The result is {lower bound, upper bound};
+     * the upper bound is Integer.MAX_VALUE if the landmarks give none, and both are -1 if
+     * the landmarks prove no path exists.
+     * @param node1 name of the starting article node
+     * @param node2 name of the ending article node
+     * @return lower and upper bound on the length of the shortest path
+     */
+    public int[] getShortestPathLengthBounds(String node1, String node2){
+        GraphVersion g = version;
+        LandmarkOracle oracle = landmarks;
+        if (oracle == null || oracle.getVersion() != g.number){
+            throw new IllegalStateException("buildLandmarks() has not been called since the graph last changed");
+        }
+        int initialVertex = vertexOf(g, node1);
+        int finalVertex = vertexOf(g, node2);
+        int lowerBound = oracle.lowerBound(initialVertex, finalVertex);
+        if (lowerBound == LandmarkOracle.INFINITE){
+            return new int[] {-1, -1};
+        }
+        return new int[] {lowerBound, oracle.upperBound(initialVertex, finalVertex)};
+    }
+
+    /**
+     * Returns a shortest path from node1 to node2 found by an A* search guided by the
+     * landmark bounds, or by getShortestPath if buildLandmarks() has not been called since
+     * the graph last changed.
+     * The path has the same length as the one from getShortestPath, but may pass through
+     * different articles when several shortest paths exist. If no path exists, returns an
+     * empty list.
+     * @param node1 name of the starting article node
+     * @param node2 name of the ending article node
+     * @return list of the names of nodes on the shortest path
+     */
+    public List<String> getShortestPathAStar(String node1, String node2){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            LandmarkOracle oracle = landmarks;
+            if (oracle == null || oracle.getVersion() != g.number){
+                return toNames(g, findCachedPath(g, vertexOf(g, node1), vertexOf(g, node2), sample));
+            }
+            int initialVertex = vertexOf(g, node1);
+            int finalVertex = vertexOf(g, node2);
+            ReachabilityIndex index = reachabilityFor(g);
+            SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+            try {
+                if (index != null && !index.canReach(initialVertex, finalVertex, buffers)){
+                    return new ArrayList<String>();
                 }
-            }  
+                return toNames(g, oracle.findPath(g.graph, initialVertex, finalVertex, buffers));
+            } finally {
+                release(buffers, sample);
+            }
+        } finally {
+            metrics.record(QueryMetrics.QueryType.A_STAR, sample);
         }
-        // returns the path list of articles
-        return pathList;  
+    }
+
+    /**
+     * Returns a shortest path from node1 to node2 found by a direction-optimizing search,
+     * which checks far fewer edges than getShortestPath once the search has reached
+     * heavily linked hub articles. The path has the same length as the one from
+     * getShortestPath, but may pass through different articles when several shortest
+     * paths exist. If no path exists, returns an empty list.
+     * @param node1 name of the starting article node
+     * @param node2 name of the ending article node
+     * @return list of the names of nodes on the shortest path
+     */
+    public List<String> getShortestPathDirectionOptimizing(String node1, String node2){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            int initialVertex = vertexOf(g, node1);
+            int finalVertex = vertexOf(g, node2);
+            ReachabilityIndex index = reachabilityFor(g);
+            SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+            try {
+                if (index != null && !index.canReach(initialVertex, finalVertex, buffers)){
+                    return new ArrayList<String>();
+                }
+                int[] parent = buffers.parent;
+                DirectionOptimizingBfs search = buffers.getDirectionOptimizing();
+                search.search(g.graph, g.reverseGraph, initialVertex, finalVertex, parent, buffers.distance);
+                if (!search.isReached(finalVertex)){
+                    return new ArrayList<String>();
+                }
+                return toNames(g, readPath(parent, initialVertex, finalVertex));
+            } finally {
+                release(buffers, sample);
+            }
+        } finally {
+            metrics.record(QueryMetrics.QueryType.DIRECTION_OPTIMIZING, sample);
+        }
+    }
+
+    /**
+     * Returns the number of different shortest paths from node1 to node2, without listing
+     * them: 0 if no path exists and 1 if the two nodes are the same. Counts too large for a
+     * long are returned as Long.MAX_VALUE.
+     * @param node1 name of the starting article node
+     * @param node2 name of the ending article node
+     * @return number of shortest paths
+     */
+    public long countShortestPaths(String node1, String node2){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            ShortestPathDag dag = buildShortestPathDag(g, vertexOf(g, node1), vertexOf(g, node2), sample);
+            return dag == null ? 0 : dag.countPaths();
+        } finally {
+            metrics.record(QueryMetrics.QueryType.COUNT_PATHS, sample);
+        }
+    }
+
+    /**
+     * Returns every shortest path from node1 to node2, each in the form getShortestPath
+     * returns. Paths are produced one at a time as the stream is consumed, so even millions
+     * of them never have to fit in memory at once; the stream is empty if no path exists.
+     * The paths are those of the graph when this is called, whatever is updated afterwards.
+     * @param node1 name of the starting article node
+     * @param node2 name of the ending article node
+     * @return stream of the shortest paths
+     */
+    public Stream<List<String>> getAllShortestPaths(String node1, String node2){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            ShortestPathDag dag = buildShortestPathDag(g, vertexOf(g, node1), vertexOf(g, node2), sample);
+            if (dag == null){
+                return Stream.empty();
+            }
+            return toNameStream(g, dag.iterator());
+        } finally {
+            metrics.record(QueryMetrics.QueryType.ALL_SHORTEST_PATHS, sample);
+        }
+    }
+
+    /**
+     * Returns the simple paths (paths that never visit an article twice) from node1 to
+     * node2, shortest first. Each path is found when the stream asks for it, so
+     * getShortestSimplePaths(a, b).limit(k) finds the k shortest paths with at most k times
+     * the path length in searches. The paths are those of the graph when this is called.
+     * @param node1 name of the starting article node
+     * @param node2 name of the ending article node
+     * @return stream of the simple paths in order of length
+     */
+    public Stream<List<String>> getShortestSimplePaths(String node1, String node2){
+        return shortestSimplePaths(node1, node2, null);
+    }
+
+    /**
+     * Returns the stream of getShortestSimplePaths, adding the work of its searches to
+     * sample if it is not null.
+     */
+    private Stream<List<String>> shortestSimplePaths(String node1, String node2, QueryMetrics.Sample sample){
+        GraphVersion g = version;
+        int initialVertex = vertexOf(g, node1);
+        int finalVertex = vertexOf(g, node2);
+        ReachabilityIndex index = reachabilityFor(g);
+        if (index != null){
+            SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+            try {
+                if (!index.canReach(initialVertex, finalVertex, buffers)){
+                    return Stream.empty();
+                }
+            } finally {
+                release(buffers, sample);
+            }
+        }
+        return toNameStream(g, new SimplePathEnumerator(g.graph, initialVertex, finalVertex, searchBuffers, sample));
+    }
+
+    /**
+     * Returns the k shortest simple paths from node1 to node2, shortest first, or all of
+     * them if there are fewer than k.
+     * @param node1 name of the starting article node
+     * @param node2 name of the ending article node
+     * @param k number of paths wanted
+     * @return list of up to k paths
+     */
+    public List<List<String>> getKShortestPaths(String node1, String node2, int k){
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            return shortestSimplePaths(node1, node2, sample).limit(k).collect(Collectors.toList());
+        } finally {
+            metrics.record(QueryMetrics.QueryType.K_SHORTEST_PATHS, sample);
+        }
+    }
+
+    /**
+     * Builds the DAG of all shortest paths in g from initialVertex to finalVertex.
+     * @return the DAG, or null if there is no path
+     */
+    private ShortestPathDag buildShortestPathDag(GraphVersion g, int initialVertex, int finalVertex, QueryMetrics.Sample sample){
+        ReachabilityIndex index = reachabilityFor(g);
+        SearchBuffers buffers = searchBuffers.acquire(g.numVertices());
+        try {
+            if (index != null && !index.canReach(initialVertex, finalVertex, buffers)){
+                return null;
+            }
+            return ShortestPathDag.build(g.graph, g.reverseGraph, initialVertex, finalVertex, buffers);
+        } finally {
+            release(buffers, sample);
+        }
+    }
+
+    /**
+     * Wraps an iterator of vertex paths in g as a lazy stream of name lists.
+     */
+    private static Stream<List<String>> toNameStream(GraphVersion g, Iterator<int[]> paths){
+        Spliterator<int[]> spliterator = Spliterators.spliteratorUnknownSize(paths, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).map(path -> toNames(g, path));
+    }
+
+    /**
+     * Bidirectional breadth-first search. Each round expands one whole level of whichever
+     * side has the smaller frontier. An edge that reaches a vertex already seen by the
+     * other side is a candidate meeting point; once a level produces candidates, the
+     * shortest of them is a shortest path.
+     * @param g graph version to search
+     * @param initialVertex starting vertex
+     * @param finalVertex ending vertex
+     * @param reachability index for g, used like in findPath; null to search without one
+     * @param forward scratch arrays for the forward search; the backward search uses forward.getBackward()
+     * @return vertices on the path in order, or an empty array if no path exists
+     */
+    private int[] findPathBidirectional(GraphVersion g, int initialVertex, int finalVertex, ReachabilityIndex reachability, SearchBuffers forward){
+        if (initialVertex == finalVertex){
+            return new int[] {initialVertex};
+        }
+        if (reachability != null && !reachability.canReach(initialVertex, finalVertex, forward)){
+            return new int[0];
+        }
+        SearchBuffers backward = forward.getBackward();
+        forward.startSearch();
+        backward.startSearch();
+        int[] forwardQueue = forward.queue;
+        int[] backwardQueue = backward.queue;
+        int forwardHead = 0;
+        int forwardTail = 0;
+        int backwardHead = 0;
+        int backwardTail = 0;
+        NeighborCursor neighbors = forward.cursor;
+
+        forward.markVisited(initialVertex);
+        forward.parent[initialVertex] = initialVertex;
+        forward.distance[initialVertex] = 0;
+        forwardQueue[forwardTail++] = initialVertex;
+        backward.markVisited(finalVertex);
+        backward.parent[finalVertex] = finalVertex;
+        backward.distance[finalVertex] = 0;
+        backwardQueue[backwardTail++] = finalVertex;
+
+        // best meeting edge found so far: meetFrom is on the forward side, meetTo on the backward side
+        int bestLength = Integer.MAX_VALUE;
+        int meetFrom = -1;
+        int meetTo = -1;
+        // work of both sides, counted for QueryMetrics
+        long edgesScanned = 0;
+        int peakFrontier = 2;
+        while (bestLength == Integer.MAX_VALUE && forwardHead < forwardTail && backwardHead < backwardTail){
+            peakFrontier = Math.max(peakFrontier, forwardTail - forwardHead + backwardTail - backwardHead);
+            if (forwardTail - forwardHead <= backwardTail - backwardHead){
+                // expands one level forwards along outgoing links
+                int levelEnd = forwardTail;
+                while (forwardHead < levelEnd){
+                    int vertex = forwardQueue[forwardHead++];
+                    g.graph.getNeighbors(vertex, neighbors);
+                    while (neighbors.hasNext()){
+                        int neighbor = neighbors.next();
+                        edgesScanned++;
+                        if (backward.isVisited(neighbor)){
+                            int length = forward.distance[vertex] + 1 + backward.distance[neighbor];
+                            if (length < bestLength){
+                                bestLength = length;
+                                meetFrom = vertex;
+                                meetTo = neighbor;
+                            }
+                        }
+                        if (forward.markVisited(neighbor)){
+                            forward.parent[neighbor] = vertex;
+                            forward.distance[neighbor] = forward.distance[vertex] + 1;
+                            // a vertex that cannot reach the target is never on the path
+                            if (reachability == null || reachability.mayReach(neighbor, finalVertex)){
+                                forwardQueue[forwardTail++] = neighbor;
+                            }
+                        }
+                    }
+                }
+            } else {
+                // expands one level backwards along incoming links
+                int levelEnd = backwardTail;
+                while (backwardHead < levelEnd){
+                    int vertex = backwardQueue[backwardHead++];
+                    g.reverseGraph.getNeighbors(vertex, neighbors);
+                    while (neighbors.hasNext()){
+                        int neighbor = neighbors.next();
+                        edgesScanned++;
+                        if (forward.isVisited(neighbor)){
+                            int length = forward.distance[neighbor] + 1 + backward.distance[vertex];
+                            if (length < bestLength){
+                                bestLength = length;
+                                meetFrom = neighbor;
+                                meetTo = vertex;
+                            }
+                        }
+                        if (backward.markVisited(neighbor)){
+                            backward.parent[neighbor] = vertex;
+                            backward.distance[neighbor] = backward.distance[vertex] + 1;
+                            if (reachability == null || reachability.mayReach(initialVertex, neighbor)){
+                                backwardQueue[backwardTail++] = neighbor;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        forward.recordWork(forwardHead + backwardHead, edgesScanned, peakFrontier);
+
+        if (bestLength == Integer.MAX_VALUE){
+            return new int[0];
+        }
+        // joins the forward half (initialVertex to meetFrom) and the backward half (meetTo to finalVertex)
+        int[] path = new int[bestLength + 1];
+        int index = forward.distance[meetFrom];
+        for (int v = meetFrom; index >= 0; v = forward.parent[v]){
+            path[index--] = v;
+        }
+        index = forward.distance[meetFrom] + 1;
+        for (int v = meetTo; index <= bestLength; v = backward.parent[v]){
+            path[index++] = v;
+        }
+        return path;
+    }
+
+    /**
+     * Walks the parent array back from finalVertex to initialVertex.
+     * @return vertices on the path, initialVertex first
+     */
+    static int[] readPath(int[] parent, int initialVertex, int finalVertex){
+        // counts the edges on the path first so the array has the right size
+        int length = 0;
+        for (int v = finalVertex; v != initialVertex; v = parent[v]){
+            length++;
+        }
+        int[] path = new int[length + 1];
+        int v = finalVertex;
+        for (int i = length; i >= 0; i--){
+            path[i] = v;
+            v = parent[v];
+        }
+        return path;
+    }
+
+    /**
+     * Converts a path of vertex numbers in g to the list of article names.
+     */
+    private static List<String> toNames(GraphVersion g, int[] path){
+        List<String> pathList = new ArrayList<String>(path.length);
+        for (int vertex : path){
+            pathList.add(g.names.getName(vertex));
+        }
+        return pathList;
     }
 
 
@@ -243,26 +1258,33 @@ public class PathFinder {
      *      on the path (in order) in between. 
      */
     public List<String> getShortestPath(String node1, String intermediateNode, String node2){
-        // gets the paths from node1 to intermediateNode and from intermediateNode to node2
-        List<String> path1 = this.getShortestPath(node1, intermediateNode);
-        List<String> path2 = this.getShortestPath(intermediateNode, node2);
+        QueryMetrics.Sample sample = metrics.start();
+        try {
+            GraphVersion g = version;
+            int initialVertex = vertexOf(g, node1);
+            int intermediateVertex = vertexOf(g, intermediateNode);
+            int finalVertex = vertexOf(g, node2);
+            // gets the paths from node1 to intermediateNode and from intermediateNode to node2;
+            // legs shared with earlier queries come straight from the path cache
+            int[] path1 = findCachedPath(g, initialVertex, intermediateVertex, sample);
+            int[] path2 = findCachedPath(g, intermediateVertex, finalVertex, sample);
         
-        // if both paths exist, combine the two
-        if (!path1.isEmpty() && !path2.isEmpty()){
-            // remove the intermediate node from path 1 to avoid double counts
-            path1.remove(intermediateNode);
-            // adds each article from path 2 to path 1
-            for (String node : path2){
-                path1.add(node);
+            // if either path doesn't exist, return an empty list
+            if (path1.length == 0 || path2.length == 0){
+                return new ArrayList<String>();
             }
-        // returns path
-            return path1;
-        // if either path doesn't exist, return an empty list
-        } else {
-            List<String> emptyPath = new ArrayList<String>();
-            return emptyPath;
+            // combines the two, leaving the intermediate node off the end of path 1 to avoid double counts
+            List<String> pathList = new ArrayList<String>(path1.length + path2.length - 1);
+            for (int i = 0; i < path1.length - 1; i++){
+                pathList.add(g.names.getName(path1[i]));
+            }
+            for (int vertex : path2){
+                pathList.add(g.names.getName(vertex));
+            }
+            return pathList;
+        } finally {
+            metrics.record(QueryMetrics.QueryType.PATH_VIA, sample);
         }
-        
     }
     
     /**
@@ -291,44 +1313,53 @@ public class PathFinder {
     }
     
     /**
-    * Main method: given two correctly formatted files, finds the shortest path between two (or three) 
-    * randomly generated articles.
+    * Main method: given two correctly formatted files, or one snapshot file written by
+    * GraphSnapshot, finds the shortest path between two (or three) randomly generated articles.
     */
     public static void main(String[] args){
         // Usage statements for incorrect argument formatting
         if (args.length < 1 || args.length > 3){
-            System.err.println("Arguments formatted incorrectly. You should include: articlesFile vertexFile (useIntermediateNode)");
+            System.err.println("Arguments formatted incorrectly. You should include: articlesFile vertexFile (useIntermediateNode), or: snapshotFile (useIntermediateNode)");
+            System.exit(1);
         }
-        if (args.length == 3 && !args[2].equals("useIntermediateNode")){
-            System.err.println("Third argument formatted incorrectly. You should format it as: useIntermediateNode");
+        // a snapshot file stands in for both the article and link files
+        boolean fromSnapshot = args[0].endsWith(".snapshot");
+        int fileArguments = fromSnapshot ? 1 : 2;
+        if (args.length > fileArguments && !args[fileArguments].equals("useIntermediateNode")){
+            System.err.println("Last argument formatted incorrectly. You should format it as: useIntermediateNode");
         }
         
-        // Creates a PathFinder object from given article and link files
-        String vertexFile = args[0];
-        String edgeFile = args[1];
-        PathFinder path = new PathFinder(vertexFile, edgeFile);
+        // Creates a PathFinder object from given article and link files, or from the snapshot
+        PathFinder path;
+        if (fromSnapshot){
+            path = PathFinder.fromSnapshot(args[0]);
+        } else {
+            String vertexFile = args[0];
+            String edgeFile = args[1];
+            path = new PathFinder(vertexFile, edgeFile);
+        }
         
         // picks random vertices within the number of vertices of the graph
         Random rng = new Random();
-        int vertex1 = rng.nextInt(path.numberOfVertices);
-        int vertex2 = rng.nextInt(path.numberOfVertices);
+        int vertex1 = rng.nextInt(path.getNumberOfArticles());
+        int vertex2 = rng.nextInt(path.getNumberOfArticles());
         // converts them to strings
-        String vertex1String = path.vertexToName.get(vertex1);
-        String vertex2String = path.vertexToName.get(vertex2);
+        String vertex1String = path.getArticleName(vertex1);
+        String vertex2String = path.getArticleName(vertex2);
         
         // if intermediate node is not specified, get the shortest path between the two
         // random nodes
-        if (args.length == 2){
+        if (args.length == fileArguments){
             List<String> ourPath = path.getShortestPath(vertex1String, vertex2String);
             path.displayPath(ourPath, vertex1String, vertex2String); 
         }
         
         // if intermediate node is specified, get the shortest path between the two
         // random nodes, but with the intermediate node in between
-        if (args.length == 3 && args[2].equals("useIntermediateNode")){
+        if (args.length == fileArguments + 1 && args[fileArguments].equals("useIntermediateNode")){
             // creates a random intermediate node and converts it to a string
-            int intermediateNode = rng.nextInt(path.numberOfVertices);
-            String intermediateString = path.vertexToName.get(intermediateNode);
+            int intermediateNode = rng.nextInt(path.getNumberOfArticles());
+            String intermediateString = path.getArticleName(intermediateNode);
             
             List<String> ourPath = path.getShortestPath(vertex1String, intermediateString, vertex2String);
             System.out.println("If we are passing through " + intermediateString + ":");
@@ -337,4 +1368,3 @@ public class PathFinder {
         }
     }
 }
-    
\ No newline at end of file
@@ -0,0 +1,326 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long-running local HTTP service over one PathFinder, so the graph is loaded once
+ * instead of once per query. Uses only the JDK's built-in HTTP server. Endpoints:
+ *
+ *   /path?from=A&to=B           shortest path from A to B
+ *   /path?from=A&to=B&via=C     shortest path from A to B through C
+ *   /stats                      requests, throughput and latency per endpoint, then the
+ *                               PathFinder's query metrics
+ *
+ * Paths come back as JSON: {"from":..,"to":..,"via":..,"length":n,"path":[..]}, with a
+ * length of -1 and an empty path when there is none. Identical requests that arrive while
+ * one is being answered wait for that answer instead of searching again.
+ *
+ * Usage: java PathFinderServer vertexFile edgeFile [port], or: java PathFinderServer snapshotFile [port]
+ */
+public class PathFinderServer {
+    private static final int DEFAULT_PORT = 8080;
+
+    private final PathFinder pathFinder;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // requests being answered, by endpoint and arguments; later identical requests share the answer
+    private final ConcurrentHashMap<String,CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<String,CompletableFuture<List<String>>>();
+    private final EndpointStats pathStats = new EndpointStats("/path");
+    private final EndpointStats statsStats = new EndpointStats("/stats");
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Constructs a server for pathFinder listening on the loopback address. Call start() to
+     * begin answering requests.
+     * @param pathFinder graph to answer queries on
+     * @param port port to listen on, or 0 for any free port
+     */
+    public PathFinderServer(PathFinder pathFinder, int port) throws IOException {
+        this.pathFinder = pathFinder;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/path", exchange -> handle(exchange, pathStats, this::answerPath));
+        server.createContext("/stats", exchange -> handle(exchange, statsStats, this::answerStats));
+    }
+
+    /**
+     * Returns an executor that runs each request on its own virtual thread when the JDK has
+     * them (21 and later), and on a growing pool of threads otherwise. Found by reflection
+     * so the server still compiles and runs on JDK 17.
+     */
+    private static ExecutorService newExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e){
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "PathFinderServer-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start(){
+        server.start();
+    }
+
+    /**
+     * Stops answering requests, giving those already running up to delaySeconds to finish.
+     */
+    public void stop(int delaySeconds){
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     */
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Computes the body of a response to one request.
+     */
+    private interface Answer {
+        Response answer(Map<String,String> parameters, EndpointStats stats);
+    }
+
+    /**
+     * Status code, content type and body of a response.
+     */
+    private static final class Response {
+        private final int status;
+        private final String contentType;
+        private final String body;
+
+        Response(int status, String contentType, String body){
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Answers one request with answer and records it in stats.
+     */
+    private void handle(HttpExchange exchange, EndpointStats stats, Answer answer) throws IOException {
+        long start = System.nanoTime();
+        Response response;
+        try {
+            if (!exchange.getRequestMethod().equals("GET")){
+                response = error(405, "Only GET is supported");
+            } else {
+                response = answer.answer(parseQuery(exchange.getRequestURI().getRawQuery()), stats);
+            }
+        } catch (IllegalArgumentException e){
+            // unknown article names and malformed query strings
+            response = error(400, e.getMessage());
+        } catch (RuntimeException | Error e){
+            // the client still gets an answer, even when a search overflows the stack or runs out of memory
+            response = error(500, e.toString());
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()){
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+            stats.record(System.nanoTime() - start, response.status >= 400);
+        }
+    }
+
+    /**
+     * Answers /path, sharing the search with any identical request already running.
+     */
+    private Response answerPath(Map<String,String> parameters, EndpointStats stats){
+        String from = parameters.get("from");
+        String to = parameters.get("to");
+        String via = parameters.get("via");
+        if (from == null || to == null){
+            return error(400, "Both from and to are required");
+        }
+        // names cannot contain a NUL, so the key is unambiguous
+        String key = "path\0" + from + "\0" + to + "\0" + (via == null ? "" : via);
+        CompletableFuture<List<String>> mine = new CompletableFuture<List<String>>();
+        CompletableFuture<List<String>> running = inFlight.putIfAbsent(key, mine);
+        List<String> path;
+        if (running != null){
+            stats.coalesced.increment();
+            try {
+                path = running.join();
+            } catch (CompletionException e){
+                // answers the same way as the request that did the search
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException){
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error){
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        } else {
+            try {
+                path = via == null ? pathFinder.getShortestPath(from, to) : pathFinder.getShortestPath(from, via, to);
+                mine.complete(path);
+            } catch (Throwable e){
+                // waiters already holding mine would otherwise block forever
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                // later requests search again, so they see updates made since
+                inFlight.remove(key, mine);
+            }
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\"from\":").append(quote(from)).append(",\"to\":").append(quote(to));
+        json.append(",\"via\":").append(via == null ? "null" : quote(via));
+        json.append(",\"length\":").append(path.size() - 1).append(",\"path\":[");
+        for (int i = 0; i < path.size(); i++){
+            if (i > 0){
+                json.append(',');
+            }
+            json.append(quote(path.get(i)));
+        }
+        json.append("]}\n");
+        return new Response(200, "application/json; charset=utf-8", json.toString());
+    }
+
+    /**
+     * Answers /stats with one line per endpoint, then one per query type that has run.
+     */
+    private Response answerStats(Map<String,String> parameters, EndpointStats stats){
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        StringBuilder text = new StringBuilder();
+        text.append("uptime=").append(Math.round(seconds)).append("s\n");
+        text.append(pathStats.describe(seconds)).append('\n');
+        text.append(statsStats.describe(seconds)).append('\n');
+        for (QueryStats queryStats : pathFinder.getQueryMetrics().getQueryStats()){
+            text.append(queryStats).append('\n');
+        }
+        return new Response(200, "text/plain; charset=utf-8", text.toString());
+    }
+
+    private static Response error(int status, String message){
+        return new Response(status, "application/json; charset=utf-8", "{\"error\":" + quote(String.valueOf(message)) + "}\n");
+    }
+
+    /**
+     * Splits a raw query string into decoded names and values; a repeated name keeps its last value.
+     */
+    private static Map<String,String> parseQuery(String rawQuery){
+        Map<String,String> parameters = new HashMap<String,String>();
+        if (rawQuery == null || rawQuery.isEmpty()){
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")){
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns s as a JSON string literal.
+     */
+    private static String quote(String s){
+        StringBuilder quoted = new StringBuilder(s.length() + 2);
+        quoted.append('"');
+        for (int i = 0; i < s.length(); i++){
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\'){
+                quoted.append('\\').append(c);
+            } else if (c < 0x20){
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Request counts and total time for one endpoint.
+     */
+    private static final class EndpointStats {
+        private final String path;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        // requests answered by waiting for an identical one already running
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        EndpointStats(String path){
+            this.path = path;
+        }
+
+        void record(long nanos, boolean failed){
+            requests.increment();
+            totalNanos.add(nanos);
+            if (failed){
+                errors.increment();
+            }
+        }
+
+        String describe(double seconds){
+            long count = requests.sum();
+            return path + ": requests=" + count + " errors=" + errors.sum() + " coalesced=" + coalesced.sum()
+                + " throughput=" + String.format("%.1f", count / Math.max(seconds, 1e-9)) + "/s"
+                + " mean=" + (count == 0 ? 0 : totalNanos.sum() / count / 1000) + "us";
+        }
+    }
+
+    /**
+     * Loads the graph once and serves queries until the process is stopped.
+     */
+    public static void main(String[] args){
+        boolean fromSnapshot = args.length > 0 && args[0].endsWith(".snapshot");
+        int fileArguments = fromSnapshot ? 1 : 2;
+        if (args.length < fileArguments || args.length > fileArguments + 1){
+            System.err.println("Usage: java PathFinderServer vertexFile edgeFile [port], or: java PathFinderServer snapshotFile [port]");
+            System.exit(1);
+        }
+        int port = DEFAULT_PORT;
+        if (args.length > fileArguments){
+            try {
+                port = Integer.parseInt(args[fileArguments]);
+            } catch (NumberFormatException e){
+                System.err.println("Port must be a number: " + args[fileArguments]);
+                System.exit(1);
+            }
+        }
+        PathFinder pathFinder = fromSnapshot ? PathFinder.fromSnapshot(args[0]) : new PathFinder(args[0], args[1]);
+        try {
+            PathFinderServer server = new PathFinderServer(pathFinder, port);
+            server.start();
+            System.out.println("Serving " + pathFinder.getNumberOfArticles() + " articles on http://localhost:" + server.getPort() + "/path?from=&to=&via=");
+        } catch (IOException e){
+            System.err.println(e);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics for the queries a PathFinder answers. For every query the wall time, the
+ * vertices its searches took off a queue or frontier, the edges they looked at and the
+ * largest queue or frontier are recorded, and aggregated per query type into totals and
+ * a latency histogram. The slowest query of each type is kept with its work counts, to
+ * tell a slow query that searched a lot apart from one that waited. Recording is lock-free
+ * except when a query is the slowest so far.
+ *
+ * Read the metrics with snapshot() or getStats(), or through JMX after registerMBean().
+ */
+public final class QueryMetrics implements QueryMetricsMXBean {
+    /**
+     * The kinds of query that are timed separately.
+     */
+    public enum QueryType {
+        PATH, PATH_VIA, PATH_LENGTH, PATH_LENGTHS, BIDIRECTIONAL, A_STAR, DIRECTION_OPTIMIZING,
+        DISTANCES_FROM, ECCENTRICITY, COUNT_PATHS, ALL_SHORTEST_PATHS, K_SHORTEST_PATHS
+    }
+
+    private final TypeMetrics[] byType;
+
+    QueryMetrics(){
+        byType = new TypeMetrics[QueryType.values().length];
+        for (int i = 0; i < byType.length; i++){
+            byType[i] = new TypeMetrics();
+        }
+    }
+
+    /**
+     * Starts timing a query.
+     */
+    Sample start(){
+        return new Sample(System.nanoTime());
+    }
+
+    /**
+     * Records a finished query of the given type.
+     */
+    void record(QueryType type, Sample sample){
+        byType[type.ordinal()].record(System.nanoTime() - sample.startNanos, sample);
+    }
+
+    /**
+     * Returns the metrics recorded for queries of the given type.
+     */
+    public QueryStats getStats(QueryType type){
+        return byType[type.ordinal()].snapshot(type.name());
+    }
+
+    /**
+     * Returns the metrics of every query type, in QueryType order, including types that have not run.
+     */
+    public Map<QueryType,QueryStats> snapshot(){
+        Map<QueryType,QueryStats> stats = new LinkedHashMap<QueryType,QueryStats>();
+        for (QueryType type : QueryType.values()){
+            stats.put(type, getStats(type));
+        }
+        return stats;
+    }
+
+    @Override
+    public List<QueryStats> getQueryStats(){
+        List<QueryStats> stats = new ArrayList<QueryStats>();
+        for (QueryStats typeStats : snapshot().values()){
+            if (typeStats.getCount() > 0){
+                stats.add(typeStats);
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public long getTotalQueries(){
+        long total = 0;
+        for (TypeMetrics metrics : byType){
+            total += metrics.count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public void reset(){
+        for (TypeMetrics metrics : byType){
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as
+     * "PathFinder:type=QueryMetrics,name=" + name.
+     * @param name name that tells this PathFinder's metrics apart from others in the JVM
+     * @return the name the metrics were registered under
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("PathFinder:type=QueryMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Work done by one query, collected from the buffers of each search it ran.
+     */
+    static final class Sample {
+        private final long startNanos;
+        private long verticesDequeued;
+        private long edgesScanned;
+        private long peakFrontier;
+
+        private Sample(long startNanos){
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Adds the work recorded in buffers and clears it there. Synchronized because the
+         * workers of a parallel query add their work from several threads.
+         */
+        synchronized void addWork(SearchBuffers buffers){
+            verticesDequeued += buffers.verticesDequeued;
+            edgesScanned += buffers.edgesScanned;
+            peakFrontier = Math.max(peakFrontier, buffers.peakFrontier);
+            buffers.clearWork();
+        }
+    }
+
+    /**
+     * Running totals for one query type.
+     */
+    private static final class TypeMetrics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder verticesDequeued = new LongAdder();
+        private final LongAdder edgesScanned = new LongAdder();
+        private final LongAccumulator peakFrontier = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        // the slowest query so far; written under this object's lock
+        private volatile long slowestNanos;
+        private long slowestVertices;
+        private long slowestEdges;
+        private long slowestFrontier;
+
+        void record(long nanos, Sample sample){
+            long vertices;
+            long edges;
+            long frontier;
+            synchronized (sample){
+                vertices = sample.verticesDequeued;
+                edges = sample.edgesScanned;
+                frontier = sample.peakFrontier;
+            }
+            count.increment();
+            totalNanos.add(nanos);
+            verticesDequeued.add(vertices);
+            edgesScanned.add(edges);
+            peakFrontier.accumulate(frontier);
+            latencies.record(nanos);
+            // most queries are not the slowest, so the lock is rarely taken
+            if (nanos > slowestNanos){
+                synchronized (this){
+                    if (nanos > slowestNanos){
+                        slowestVertices = vertices;
+                        slowestEdges = edges;
+                        slowestFrontier = frontier;
+                        slowestNanos = nanos;
+                    }
+                }
+            }
+        }
+
+        synchronized QueryStats snapshot(String queryType){
+            return new QueryStats(queryType, count.sum(), totalNanos.sum(), latencies.snapshot(),
+                                  verticesDequeued.sum(), edgesScanned.sum(), peakFrontier.get(),
+                                  slowestNanos, slowestVertices, slowestEdges, slowestFrontier);
+        }
+
+        synchronized void reset(){
+            count.reset();
+            totalNanos.reset();
+            verticesDequeued.reset();
+            edgesScanned.reset();
+            peakFrontier.reset();
+            latencies.reset();
+            slowestNanos = 0;
+            slowestVertices = 0;
+            slowestEdges = 0;
+            slowestFrontier = 0;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+import java.util.List;
+
+/**
+ * Management interface of QueryMetrics, for reading PathFinder query metrics with JMX
+ * tools such as JConsole, or from a dashboard's JMX collector.
+ */
+public interface QueryMetricsMXBean {
+    /**
+     * Returns the metrics of every query type that has run at least once.
+     */
+    public List<QueryStats> getQueryStats();
+
+    /**
+     * Returns the total number of queries recorded.
+     */
+    public long getTotalQueries();
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset();
+}
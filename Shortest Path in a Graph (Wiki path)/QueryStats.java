@@ -0,0 +1,142 @@
+/**
+ * Immutable snapshot of the metrics for one type of PathFinder query: how many ran, how
+ * long they took, and how much of the graph their searches touched. Latencies are in
+ * nanoseconds and percentiles come from a logarithmic histogram, so they are accurate to
+ * about 3%. The getters also make this a composite value when read through JMX.
+ */
+public final class QueryStats {
+    private final String queryType;
+    private final long count;
+    private final long totalNanos;
+    private final long[] latencyBuckets;
+    private final long totalVerticesDequeued;
+    private final long totalEdgesScanned;
+    private final long maxPeakFrontier;
+    private final long slowestNanos;
+    private final long slowestVerticesDequeued;
+    private final long slowestEdgesScanned;
+    private final long slowestPeakFrontier;
+
+    QueryStats(String queryType, long count, long totalNanos, long[] latencyBuckets,
+               long totalVerticesDequeued, long totalEdgesScanned, long maxPeakFrontier,
+               long slowestNanos, long slowestVerticesDequeued, long slowestEdgesScanned, long slowestPeakFrontier){
+        this.queryType = queryType;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.latencyBuckets = latencyBuckets;
+        this.totalVerticesDequeued = totalVerticesDequeued;
+        this.totalEdgesScanned = totalEdgesScanned;
+        this.maxPeakFrontier = maxPeakFrontier;
+        this.slowestNanos = slowestNanos;
+        this.slowestVerticesDequeued = slowestVerticesDequeued;
+        this.slowestEdgesScanned = slowestEdgesScanned;
+        this.slowestPeakFrontier = slowestPeakFrontier;
+    }
+
+    /**
+     * Returns the name of the query type, one of QueryMetrics.QueryType.
+     */
+    public String getQueryType(){
+        return queryType;
+    }
+
+    /**
+     * Returns the number of queries recorded.
+     */
+    public long getCount(){
+        return count;
+    }
+
+    /**
+     * Returns the mean wall time of a query, or 0 if none ran.
+     */
+    public long getMeanNanos(){
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Returns the wall time that percentile (0 to 100) percent of queries stayed within.
+     */
+    public long getNanosAtPercentile(double percentile){
+        return LatencyHistogram.valueAtPercentile(latencyBuckets, percentile);
+    }
+
+    public long getMedianNanos(){
+        return getNanosAtPercentile(50);
+    }
+
+    public long getP90Nanos(){
+        return getNanosAtPercentile(90);
+    }
+
+    public long getP99Nanos(){
+        return getNanosAtPercentile(99);
+    }
+
+    public long getP999Nanos(){
+        return getNanosAtPercentile(99.9);
+    }
+
+    /**
+     * Returns the wall time of the slowest query.
+     */
+    public long getMaxNanos(){
+        return slowestNanos;
+    }
+
+    /**
+     * Returns the number of vertices taken off a search queue or frontier, over all queries.
+     */
+    public long getTotalVerticesDequeued(){
+        return totalVerticesDequeued;
+    }
+
+    /**
+     * Returns the number of edges looked at, over all queries.
+     */
+    public long getTotalEdgesScanned(){
+        return totalEdgesScanned;
+    }
+
+    /**
+     * Returns the mean number of edges a query looked at, or 0 if none ran.
+     */
+    public long getMeanEdgesScanned(){
+        return count == 0 ? 0 : totalEdgesScanned / count;
+    }
+
+    /**
+     * Returns the largest number of vertices waiting in one search's queue or frontier.
+     */
+    public long getMaxPeakFrontier(){
+        return maxPeakFrontier;
+    }
+
+    /**
+     * Returns the vertices dequeued by the slowest query.
+     */
+    public long getSlowestVerticesDequeued(){
+        return slowestVerticesDequeued;
+    }
+
+    /**
+     * Returns the edges scanned by the slowest query.
+     */
+    public long getSlowestEdgesScanned(){
+        return slowestEdgesScanned;
+    }
+
+    /**
+     * Returns the peak frontier of the slowest query.
+     */
+    public long getSlowestPeakFrontier(){
+        return slowestPeakFrontier;
+    }
+
+    @Override
+    public String toString(){
+        return queryType + ": count=" + count + " mean=" + getMeanNanos() / 1000 + "us p50=" + getMedianNanos() / 1000
+            + "us p99=" + getP99Nanos() / 1000 + "us max=" + getMaxNanos() / 1000 + "us edges/query=" + getMeanEdgesScanned()
+            + " peakFrontier=" + maxPeakFrontier;
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.Arrays;
+
+/**
+ * Reachability index over the strongly connected components of a graph. Every vertex is
+ * mapped to its component, found with an iterative Tarjan search, and the components form
+ * a DAG (the condensation). Two kinds of labels on that DAG each prove in O(1) that a
+ * vertex cannot reach another:
+ *   - Tarjan numbers components in reverse topological order, so s can only reach t if
+ *     component(s) >= component(t);
+ *   - for each of a few depth-first traversals of the DAG, every component gets its post-order
+ *     rank and the lowest rank below it (GRAIL intervals). s can only reach t if the
+ *     interval of t lies inside the interval of s.
+ * Vertices in the same component always reach each other. mayReach() uses only these
+ * checks, so it is a constant-time filter: a pair that passes may or may not be connected.
+ * canReach() is exact. For a pair that passes the checks, it walks the condensation DAG
+ * from the source's component. It enters only components whose labels still allow them
+ * to reach the target's, so it usually touches a small part of the DAG, which is itself
+ * much smaller than the graph.
+ */
+final class ReachabilityIndex {
+    // number of DAG traversals; each adds two ints per component and filters more pairs
+    private static final int NUM_TRAVERSALS = 2;
+
+    // number of the graph version the index was built on
+    private final long version;
+    // component of each vertex, numbered in reverse topological order
+    private final int[] component;
+    private final int numComponents;
+    // condensation DAG: the components reached directly from component c are
+    // dagTargets[dagOffsets[c]] to dagTargets[dagOffsets[c + 1] - 1]
+    private final int[] dagOffsets;
+    private final int[] dagTargets;
+    // rank[i][c] is the post-order rank of component c in traversal i, low[i][c] the lowest rank it reaches
+    private final int[][] rank;
+    private final int[][] low;
+
+    private ReachabilityIndex(long version, int[] component, int numComponents, int[] dagOffsets, int[] dagTargets, int[][] rank, int[][] low){
+        this.version = version;
+        this.component = component;
+        this.numComponents = numComponents;
+        this.dagOffsets = dagOffsets;
+        this.dagTargets = dagTargets;
+        this.rank = rank;
+        this.low = low;
+    }
+
+    /**
+     * Finds the components of graph and labels its condensation.
+     * @param graph graph to index
+     * @param version number of the graph version being indexed
+     * @return the index
+     */
+    static ReachabilityIndex build(IntGraph graph, long version){
+        int numVertices = graph.numVertices();
+        int[] component = new int[numVertices];
+        int numComponents = findComponents(graph, component);
+
+        // lists the vertices of each component together, so its DAG edges can be collected at once
+        int[] memberStart = new int[numComponents + 1];
+        for (int v = 0; v < numVertices; v++){
+            memberStart[component[v] + 1]++;
+        }
+        for (int c = 0; c < numComponents; c++){
+            memberStart[c + 1] += memberStart[c];
+        }
+        int[] members = new int[numVertices];
+        int[] next = Arrays.copyOf(memberStart, numComponents);
+        for (int v = 0; v < numVertices; v++){
+            members[next[component[v]]++] = v;
+        }
+
+        // condensation DAG in CSR form, each edge between two components kept once
+        int[] dagOffsets = new int[numComponents + 1];
+        int[] dagTargets = new int[Math.max(16, numComponents)];
+        int numDagEdges = 0;
+        int[] lastSource = new int[numComponents];
+        Arrays.fill(lastSource, -1);
+        NeighborCursor neighbors = new NeighborCursor();
+        for (int c = 0; c < numComponents; c++){
+            for (int i = memberStart[c]; i < memberStart[c + 1]; i++){
+                graph.getNeighbors(members[i], neighbors);
+                while (neighbors.hasNext()){
+                    int target = component[neighbors.next()];
+                    if (target != c && lastSource[target] != c){
+                        lastSource[target] = c;
+                        if (numDagEdges == dagTargets.length){
+                            dagTargets = Arrays.copyOf(dagTargets, numDagEdges * 2);
+                        }
+                        dagTargets[numDagEdges++] = target;
+                    }
+                }
+            }
+            dagOffsets[c + 1] = numDagEdges;
+        }
+        members = null;
+        dagTargets = Arrays.copyOf(dagTargets, numDagEdges);
+
+        int[][] rank = new int[NUM_TRAVERSALS][];
+        int[][] low = new int[NUM_TRAVERSALS][];
+        for (int i = 0; i < NUM_TRAVERSALS; i++){
+            rank[i] = new int[numComponents];
+            low[i] = new int[numComponents];
+            // alternates the order roots and children are visited in, so the intervals differ
+            labelIntervals(dagOffsets, dagTargets, numComponents, i % 2 == 1, rank[i], low[i]);
+        }
+        return new ReachabilityIndex(version, component, numComponents, dagOffsets, dagTargets, rank, low);
+    }
+
+    /**
+     * Iterative Tarjan search. Fills component with the component of every vertex,
+     * numbered in the order components are completed, which is reverse topological order.
+     * @return the number of components
+     */
+    private static int findComponents(IntGraph graph, int[] component){
+        int numVertices = graph.numVertices();
+        // discovery order of each vertex, -1 until visited
+        int[] index = new int[numVertices];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        int[] lowLink = new int[numVertices];
+        // vertices visited but not yet assigned a component, in visiting order
+        int[] stack = new int[numVertices];
+        int stackSize = 0;
+        // the depth-first path: vertex of each frame and where its unscanned neighbors are in edges
+        int[] frameVertex = new int[64];
+        int[] framePosition = new int[64];
+        int[] frameEnd = new int[64];
+        // neighbors of every vertex on the path, copied once so frames can resume scanning
+        int[] edges = new int[1024];
+        NeighborCursor neighbors = new NeighborCursor();
+        int nextIndex = 0;
+        int numComponents = 0;
+
+        for (int root = 0; root < numVertices; root++){
+            if (index[root] >= 0){
+                continue;
+            }
+            int depth = 0;
+            int edgesEnd = 0;
+            int vertex = root;
+            // visits vertex and pushes its frame; frames are popped when their neighbors are done
+            while (true){
+                if (vertex >= 0){
+                    index[vertex] = nextIndex;
+                    lowLink[vertex] = nextIndex;
+                    nextIndex++;
+                    stack[stackSize++] = vertex;
+                    if (depth == frameVertex.length){
+                        frameVertex = Arrays.copyOf(frameVertex, depth * 2);
+                        framePosition = Arrays.copyOf(framePosition, depth * 2);
+                        frameEnd = Arrays.copyOf(frameEnd, depth * 2);
+                    }
+                    int degree = graph.getDegree(vertex);
+                    if (edgesEnd + degree > edges.length){
+                        edges = Arrays.copyOf(edges, Math.max(edgesEnd + degree, edges.length * 2));
+                    }
+                    frameVertex[depth] = vertex;
+                    framePosition[depth] = edgesEnd;
+                    graph.getNeighbors(vertex, neighbors);
+                    while (neighbors.hasNext()){
+                        edges[edgesEnd++] = neighbors.next();
+                    }
+                    frameEnd[depth] = edgesEnd;
+                    depth++;
+                    vertex = -1;
+                }
+                int top = depth - 1;
+                int current = frameVertex[top];
+                if (framePosition[top] < frameEnd[top]){
+                    int neighbor = edges[framePosition[top]++];
+                    if (index[neighbor] < 0){
+                        vertex = neighbor;
+                    } else if (component[neighbor] < 0){
+                        // still on the stack, so part of the component being built
+                        lowLink[current] = Math.min(lowLink[current], index[neighbor]);
+                    }
+                    continue;
+                }
+                // every neighbor is done: closes the component if current is its root
+                if (lowLink[current] == index[current]){
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        component[member] = numComponents;
+                    } while (member != current);
+                    numComponents++;
+                }
+                // drops the frame and the neighbors it copied
+                depth--;
+                edgesEnd = top > 0 ? frameEnd[top - 1] : 0;
+                if (depth == 0){
+                    break;
+                }
+                int parent = frameVertex[depth - 1];
+                lowLink[parent] = Math.min(lowLink[parent], lowLink[current]);
+            }
+        }
+        return numComponents;
+    }
+
+    /**
+     * One depth-first traversal of the DAG, giving each component its post-order rank and
+     * the lowest rank among it and everything it reaches.
+     * @param reversed visit roots and children from last to first instead of first to last
+     */
+    private static void labelIntervals(int[] dagOffsets, int[] dagTargets, int numComponents, boolean reversed, int[] rank, int[] low){
+        // rank is -1 until a component is finished; visited marks components already entered
+        Arrays.fill(rank, -1);
+        boolean[] visited = new boolean[numComponents];
+        int[] stack = new int[numComponents];
+        // how many children of each component on the stack have been handled
+        int[] childrenDone = new int[numComponents];
+        int nextRank = 0;
+        for (int r = 0; r < numComponents; r++){
+            int root = reversed ? numComponents - 1 - r : r;
+            if (visited[root]){
+                continue;
+            }
+            int depth = 0;
+            stack[depth++] = root;
+            visited[root] = true;
+            low[root] = Integer.MAX_VALUE;
+            while (depth > 0){
+                int c = stack[depth - 1];
+                int start = dagOffsets[c];
+                int degree = dagOffsets[c + 1] - start;
+                if (childrenDone[c] < degree){
+                    int k = childrenDone[c]++;
+                    int child = dagTargets[reversed ? start + degree - 1 - k : start + k];
+                    if (!visited[child]){
+                        visited[child] = true;
+                        low[child] = Integer.MAX_VALUE;
+                        stack[depth++] = child;
+                    } else {
+                        // a DAG has no cycles, so a visited child is already finished
+                        low[c] = Math.min(low[c], low[child]);
+                    }
+                    continue;
+                }
+                rank[c] = nextRank++;
+                low[c] = Math.min(low[c], rank[c]);
+                depth--;
+                if (depth > 0){
+                    int parent = stack[depth - 1];
+                    low[parent] = Math.min(low[parent], low[c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns false if there is certainly no path from source to target, and true if there
+     * may be one. Takes constant time; canReach() gives the exact answer.
+     */
+    boolean mayReach(int source, int target){
+        return componentMayReach(component[source], component[target]);
+    }
+
+    /**
+     * Returns true if there is a path from source to target, and false otherwise.
+     * @param buffers scratch arrays with room for at least numComponents() vertices; their
+     *      visited marks and queue are overwritten
+     */
+    boolean canReach(int source, int target, SearchBuffers buffers){
+        int sourceComponent = component[source];
+        int targetComponent = component[target];
+        if (sourceComponent == targetComponent){
+            return true;
+        }
+        if (!componentMayReach(sourceComponent, targetComponent)){
+            return false;
+        }
+        // depth-first walk of the DAG, with components in place of vertices in the buffers
+        buffers.startSearch();
+        int[] stack = buffers.queue;
+        int size = 0;
+        buffers.markVisited(sourceComponent);
+        stack[size++] = sourceComponent;
+        while (size > 0){
+            int c = stack[--size];
+            for (int i = dagOffsets[c]; i < dagOffsets[c + 1]; i++){
+                int child = dagTargets[i];
+                if (child == targetComponent){
+                    return true;
+                }
+                if (componentMayReach(child, targetComponent) && buffers.markVisited(child)){
+                    stack[size++] = child;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns false if the labels prove that component source cannot reach component target.
+     */
+    private boolean componentMayReach(int sourceComponent, int targetComponent){
+        if (sourceComponent == targetComponent){
+            return true;
+        }
+        // components are numbered in reverse topological order
+        if (sourceComponent < targetComponent){
+            return false;
+        }
+        for (int i = 0; i < NUM_TRAVERSALS; i++){
+            if (low[i][targetComponent] < low[i][sourceComponent] || rank[i][targetComponent] > rank[i][sourceComponent]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the component of vertex.
+     */
+    int getComponent(int vertex){
+        return component[vertex];
+    }
+
+    /**
+     * Returns the number of strongly connected components.
+     */
+    int numComponents(){
+        return numComponents;
+    }
+
+    /**
+     * Returns the number of the graph version the index was built on.
+     */
+    long getVersion(){
+        return version;
+    }
+}
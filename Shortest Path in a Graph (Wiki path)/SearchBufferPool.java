@@ -0,0 +1,55 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free pool of SearchBuffers shared by every thread querying one graph. A query
+ * borrows a set of buffers, searches with it and gives it back, so concurrent queries
+ * never share scratch arrays and steady-state queries allocate no new ones.
+ *
+ * A shared pool is used instead of a ThreadLocal so that short-lived threads, such as
+ * one virtual thread per request, reuse buffers instead of each allocating their own.
+ */
+final class SearchBufferPool {
+    // at most this many idle buffers are kept; extras are left to the garbage collector
+    private final int maxIdle;
+    private final ConcurrentLinkedQueue<SearchBuffers> idle;
+    private final AtomicInteger idleCount;
+
+    /**
+     * Constructs an empty pool.
+     */
+    SearchBufferPool(){
+        this.maxIdle = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        this.idle = new ConcurrentLinkedQueue<SearchBuffers>();
+        this.idleCount = new AtomicInteger();
+    }
+
+    /**
+     * Returns a set of buffers with room for at least numVertices vertices, for the
+     * caller's exclusive use until it is released.
+     */
+    SearchBuffers acquire(int numVertices){
+        SearchBuffers buffers = idle.poll();
+        if (buffers != null){
+            idleCount.decrementAndGet();
+            if (buffers.capacity() >= numVertices){
+                // work counted by the previous borrower must not show up in this one's metrics
+                buffers.clearWork();
+                return buffers;
+            }
+        }
+        // leaves room for articles added later, so small updates don't force new buffers
+        return new SearchBuffers(numVertices + numVertices / 8 + 16);
+    }
+
+    /**
+     * Gives buffers back to the pool. The caller must not use them afterwards.
+     */
+    void release(SearchBuffers buffers){
+        if (idleCount.incrementAndGet() <= maxIdle){
+            idle.offer(buffers);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Scratch arrays for one breadth-first search over a graph with a fixed number
+ * of vertices. Visited marks are epoch stamps: a vertex counts as visited only
+ * if its stamp equals the current epoch, so starting a new search is O(1)
+ * instead of clearing an array, and the same buffers can serve query after query.
+ */
+final class SearchBuffers {
+    // visitedEpoch[v] == epoch means v was reached in the current search
+    private final int[] visitedEpoch;
+    private int epoch;
+    // parent[v] is the vertex v was reached from; only valid for visited vertices
+    final int[] parent;
+    // distance[v] is the number of edges from the search's source; filled in by searches that need it
+    final int[] distance;
+    // every vertex is enqueued at most once, so the queue never wraps
+    final int[] queue;
+    // cursor reused for every neighbor scan
+    final NeighborCursor cursor;
+    // buffers for the other half of a bidirectional search, created on first use
+    private SearchBuffers backward;
+    // bitsets for direction-optimizing searches, created on first use
+    private DirectionOptimizingBfs directionOptimizing;
+    // work done by searches with these buffers since they were acquired, for QueryMetrics
+    long verticesDequeued;
+    long edgesScanned;
+    int peakFrontier;
+
+    /**
+     * Constructs buffers for graphs with numVertices vertices.
+     */
+    SearchBuffers(int numVertices){
+        visitedEpoch = new int[numVertices];
+        epoch = 0;
+        parent = new int[numVertices];
+        distance = new int[numVertices];
+        queue = new int[numVertices];
+        cursor = new NeighborCursor();
+    }
+
+    /**
+     * Returns the number of vertices these buffers were sized for.
+     */
+    int capacity(){
+        return visitedEpoch.length;
+    }
+
+    /**
+     * Returns a second set of buffers of the same size, for the search that runs
+     * backwards from the target in a bidirectional search.
+     */
+    SearchBuffers getBackward(){
+        if (backward == null){
+            backward = new SearchBuffers(visitedEpoch.length);
+        }
+        return backward;
+    }
+
+    /**
+     * Returns a DirectionOptimizingBfs of the same size, which uses these buffers'
+     * parent and distance arrays.
+     */
+    DirectionOptimizingBfs getDirectionOptimizing(){
+        if (directionOptimizing == null){
+            directionOptimizing = new DirectionOptimizingBfs(visitedEpoch.length, this);
+        }
+        return directionOptimizing;
+    }
+
+    /**
+     * Adds the work of one search: vertices taken off its queue or frontier, edges looked
+     * at, and the most vertices waiting at once.
+     */
+    void recordWork(long vertices, long edges, int frontier){
+        verticesDequeued += vertices;
+        edgesScanned += edges;
+        peakFrontier = Math.max(peakFrontier, frontier);
+    }
+
+    /**
+     * Resets the work counters.
+     */
+    void clearWork(){
+        verticesDequeued = 0;
+        edgesScanned = 0;
+        peakFrontier = 0;
+    }
+
+    /**
+     * Forgets every visited mark from the previous search.
+     */
+    void startSearch(){
+        epoch++;
+        // on overflow, clears the stamps once and starts counting again
+        if (epoch == Integer.MAX_VALUE){
+            java.util.Arrays.fill(visitedEpoch, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Returns true if vertex was visited in the current search.
+     */
+    boolean isVisited(int vertex){
+        return visitedEpoch[vertex] == epoch;
+    }
+
+    /**
+     * Marks vertex as visited. Returns false if it already was.
+     */
+    boolean markVisited(int vertex){
+        if (visitedEpoch[vertex] == epoch){
+            return false;
+        }
+        visitedEpoch[vertex] = epoch;
+        return true;
+    }
+}
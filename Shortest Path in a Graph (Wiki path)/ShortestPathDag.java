@@ -0,0 +1,220 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Every shortest path from one vertex to another, as a DAG. Its vertices are the vertices
+ * on at least one shortest path, numbered by distance from the start, and its edges are
+ * the links that step from one distance to the next along such a path. The start is
+ * position 0 and the end is the last position. Every vertex but the end has a successor,
+ * so a depth-first walk never backs out of a dead end, and the paths can be counted or
+ * listed one at a time without keeping them all.
+ *
+ * The DAG has its own arrays, sized by the DAG rather than the graph, so it stays usable
+ * after the search buffers it was built with are returned.
+ */
+final class ShortestPathDag {
+    // vertex at each position, in order of distance from the start
+    private final int[] vertices;
+    // successors of position p are the positions successors[successorStart[p]] to successors[successorStart[p + 1] - 1]
+    private final int[] successorStart;
+    private final int[] successors;
+    // number of edges on every shortest path
+    private final int length;
+
+    private ShortestPathDag(int[] vertices, int[] successorStart, int[] successors, int length){
+        this.vertices = vertices;
+        this.successorStart = successorStart;
+        this.successors = successors;
+        this.length = length;
+    }
+
+    /**
+     * Builds the DAG of shortest paths from source to target.
+     * @param graph graph to search
+     * @param reverseGraph the same edges reversed
+     * @param source starting vertex
+     * @param target ending vertex
+     * @param forward scratch arrays; forward.getBackward() is used too
+     * @return the DAG, or null if there is no path
+     */
+    static ShortestPathDag build(IntGraph graph, IntGraph reverseGraph, int source, int target, SearchBuffers forward){
+        if (source == target){
+            return new ShortestPathDag(new int[] {source}, new int[] {0, 0}, new int[0], 0);
+        }
+        // distances from source, up to the level of target
+        forward.startSearch();
+        int[] queue = forward.queue;
+        int[] distance = forward.distance;
+        NeighborCursor neighbors = forward.cursor;
+        int head = 0;
+        int tail = 0;
+        // work counted for QueryMetrics
+        long edgesScanned = 0;
+        int peakFrontier = 1;
+        forward.markVisited(source);
+        distance[source] = 0;
+        queue[tail++] = source;
+        while (head < tail && !forward.isVisited(target)){
+            peakFrontier = Math.max(peakFrontier, tail - head);
+            int vertex = queue[head++];
+            graph.getNeighbors(vertex, neighbors);
+            while (neighbors.hasNext()){
+                int neighbor = neighbors.next();
+                edgesScanned++;
+                if (forward.markVisited(neighbor)){
+                    distance[neighbor] = distance[vertex] + 1;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        if (!forward.isVisited(target)){
+            forward.recordWork(head, edgesScanned, peakFrontier);
+            return null;
+        }
+
+        // walks back from target along links that step down one distance at a time; the
+        // vertices found are exactly those on a shortest path, farthest from source first
+        SearchBuffers backward = forward.getBackward();
+        backward.startSearch();
+        int[] dagQueue = backward.queue;
+        int size = 0;
+        backward.markVisited(target);
+        dagQueue[size++] = target;
+        for (int next = 0; next < size; next++){
+            int vertex = dagQueue[next];
+            reverseGraph.getNeighbors(vertex, neighbors);
+            while (neighbors.hasNext()){
+                int neighbor = neighbors.next();
+                edgesScanned++;
+                if (forward.isVisited(neighbor) && distance[neighbor] == distance[vertex] - 1 && backward.markVisited(neighbor)){
+                    dagQueue[size++] = neighbor;
+                }
+            }
+        }
+
+        // numbers the DAG vertices nearest-first, so source is position 0
+        int[] vertices = new int[size];
+        int[] position = backward.parent;
+        for (int i = 0; i < size; i++){
+            int vertex = dagQueue[size - 1 - i];
+            vertices[i] = vertex;
+            position[vertex] = i;
+        }
+        int[] successorStart = new int[size + 1];
+        int[] successors = new int[Math.max(16, size)];
+        // position p + 1 of the last vertex that took each position as a successor, so a
+        // link listed twice in the edge file gives one DAG edge and each path is found once
+        int[] addedBy = new int[size];
+        int numEdges = 0;
+        for (int p = 0; p < size; p++){
+            int vertex = vertices[p];
+            if (vertex != target){
+                graph.getNeighbors(vertex, neighbors);
+                while (neighbors.hasNext()){
+                    int neighbor = neighbors.next();
+                    if (backward.isVisited(neighbor) && distance[neighbor] == distance[vertex] + 1
+                        && addedBy[position[neighbor]] != p + 1){
+                        addedBy[position[neighbor]] = p + 1;
+                        if (numEdges == successors.length){
+                            successors = java.util.Arrays.copyOf(successors, numEdges * 2);
+                        }
+                        successors[numEdges++] = position[neighbor];
+                    }
+                }
+            }
+            successorStart[p + 1] = numEdges;
+        }
+        forward.recordWork(head + size, edgesScanned, peakFrontier);
+        return new ShortestPathDag(vertices, successorStart, java.util.Arrays.copyOf(successors, numEdges), distance[target]);
+    }
+
+    /**
+     * Returns the number of edges on every shortest path.
+     */
+    int length(){
+        return length;
+    }
+
+    /**
+     * Returns the number of distinct shortest paths, or Long.MAX_VALUE if there are at least that many.
+     */
+    long countPaths(){
+        // count[p] is the number of shortest paths from the start to position p
+        long[] count = new long[vertices.length];
+        count[0] = 1;
+        for (int p = 0; p < vertices.length; p++){
+            for (int i = successorStart[p]; i < successorStart[p + 1]; i++){
+                long sum = count[successors[i]] + count[p];
+                // both are non-negative, so overflow shows up as a negative sum
+                count[successors[i]] = sum < 0 ? Long.MAX_VALUE : sum;
+            }
+        }
+        return count[vertices.length - 1];
+    }
+
+    /**
+     * Returns an iterator over every shortest path, as arrays of vertices from start to end.
+     * Only the current path is kept, so each next() takes time proportional to the path length.
+     */
+    Iterator<int[]> iterator(){
+        return new Iterator<int[]>(){
+            // positions on the current path, and the next successor to try at each depth
+            private final int[] path = new int[length + 1];
+            private final int[] nextSuccessor = new int[length + 1];
+            private boolean started;
+            private boolean ready;
+            private boolean done;
+
+            @Override
+            public boolean hasNext(){
+                if (!ready && !done){
+                    ready = advance();
+                    done = !ready;
+                }
+                return ready;
+            }
+
+            @Override
+            public int[] next(){
+                if (!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                int[] result = new int[length + 1];
+                for (int depth = 0; depth <= length; depth++){
+                    result[depth] = vertices[path[depth]];
+                }
+                return result;
+            }
+
+            /**
+             * Moves to the next path: the first one at the start, then backs up to the
+             * deepest position with an untried successor and takes the first path below it.
+             */
+            private boolean advance(){
+                int depth;
+                if (!started){
+                    started = true;
+                    path[0] = 0;
+                    depth = 0;
+                } else {
+                    depth = length - 1;
+                    while (depth >= 0 && nextSuccessor[depth] == successorStart[path[depth] + 1]){
+                        depth--;
+                    }
+                    if (depth < 0){
+                        return false;
+                    }
+                    path[depth + 1] = successors[nextSuccessor[depth]++];
+                    depth++;
+                }
+                while (depth < length){
+                    nextSuccessor[depth] = successorStart[path[depth]];
+                    path[depth + 1] = successors[nextSuccessor[depth]++];
+                    depth++;
+                }
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Lists the simple paths (no repeated vertex) from one vertex to another, shortest first,
+ * with Yen's algorithm. Each path after the first is found by taking a known path,
+ * keeping its first few vertices (the root), and searching for a different way on from
+ * the last root vertex (the spur) that avoids the root and every link a known path with
+ * the same root takes next. Paths are only computed when next() asks for them, so taking
+ * the first k costs at most k times the path length in searches.
+ */
+final class SimplePathEnumerator implements Iterator<int[]> {
+    private final IntGraph graph;
+    private final int source;
+    private final int target;
+    private final SearchBufferPool bufferPool;
+    // collects the work of every search for QueryMetrics; may be null
+    private final QueryMetrics.Sample sample;
+    // paths returned so far, in order
+    private final List<int[]> accepted = new ArrayList<int[]>();
+    // candidates not yet returned, shortest first, ties in the order they were found
+    private final PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>();
+    // every path ever accepted or queued, so none is queued twice
+    private final Set<Candidate> seen = new HashSet<Candidate>();
+    private long numFound;
+    private int[] nextPath;
+    private boolean done;
+
+    /**
+     * @param graph graph to search; must not change while paths are listed
+     * @param source starting vertex
+     * @param target ending vertex
+     * @param bufferPool pool to borrow search buffers from, one search at a time
+     * @param sample query metrics sample to add the searches' work to, or null
+     */
+    SimplePathEnumerator(IntGraph graph, int source, int target, SearchBufferPool bufferPool, QueryMetrics.Sample sample){
+        this.graph = graph;
+        this.source = source;
+        this.target = target;
+        this.bufferPool = bufferPool;
+        this.sample = sample;
+    }
+
+    @Override
+    public boolean hasNext(){
+        if (nextPath == null && !done){
+            nextPath = findNext();
+            done = nextPath == null;
+        }
+        return nextPath != null;
+    }
+
+    @Override
+    public int[] next(){
+        if (!hasNext()){
+            throw new NoSuchElementException();
+        }
+        int[] path = nextPath;
+        nextPath = null;
+        return path.clone();
+    }
+
+    /**
+     * Returns the next shortest simple path, or null if there are no more.
+     */
+    private int[] findNext(){
+        SearchBuffers buffers = bufferPool.acquire(graph.numVertices());
+        try {
+            if (accepted.isEmpty()){
+                int[] first = search(new int[0], 0, new int[0], 0, buffers);
+                if (first == null){
+                    return null;
+                }
+                seen.add(new Candidate(first, numFound++));
+                accepted.add(first);
+                return first;
+            }
+            int[] previous = accepted.get(accepted.size() - 1);
+            int[] blockedNext = new int[accepted.size()];
+            for (int spurIndex = 0; spurIndex < previous.length - 1; spurIndex++){
+                // known paths that share the root leave the spur along these links
+                int numBlocked = 0;
+                for (int[] path : accepted){
+                    if (path.length > spurIndex + 1 && Arrays.equals(path, 0, spurIndex + 1, previous, 0, spurIndex + 1)){
+                        blockedNext[numBlocked++] = path[spurIndex + 1];
+                    }
+                }
+                int[] spurPath = search(previous, spurIndex, blockedNext, numBlocked, buffers);
+                if (spurPath == null){
+                    continue;
+                }
+                int[] path = new int[spurIndex + spurPath.length];
+                System.arraycopy(previous, 0, path, 0, spurIndex);
+                System.arraycopy(spurPath, 0, path, spurIndex, spurPath.length);
+                Candidate candidate = new Candidate(path, numFound++);
+                if (seen.add(candidate)){
+                    candidates.add(candidate);
+                }
+            }
+        } finally {
+            if (sample != null){
+                sample.addWork(buffers);
+            }
+            bufferPool.release(buffers);
+        }
+        Candidate best = candidates.poll();
+        if (best == null){
+            return null;
+        }
+        accepted.add(best.path);
+        return best.path;
+    }
+
+    /**
+     * Breadth-first search from root[spurIndex] (or from the source if root is empty) to
+     * the target that never enters root[0] to root[spurIndex - 1] and does not leave the
+     * spur towards any of blocked[0] to blocked[numBlocked - 1].
+     * @return vertices from the spur to the target, or null if there is no such path
+     */
+    private int[] search(int[] root, int spurIndex, int[] blocked, int numBlocked, SearchBuffers buffers){
+        int spur = root.length == 0 ? source : root[spurIndex];
+        buffers.startSearch();
+        // the root is off limits, so the joined path stays simple
+        for (int i = 0; i < spurIndex; i++){
+            buffers.markVisited(root[i]);
+        }
+        if (spur == target){
+            return new int[] {spur};
+        }
+        int[] parent = buffers.parent;
+        int[] queue = buffers.queue;
+        NeighborCursor neighbors = buffers.cursor;
+        int head = 0;
+        int tail = 0;
+        long edgesScanned = 0;
+        int peakFrontier = 1;
+        buffers.markVisited(spur);
+        parent[spur] = spur;
+        queue[tail++] = spur;
+        while (head < tail){
+            peakFrontier = Math.max(peakFrontier, tail - head);
+            int vertex = queue[head++];
+            graph.getNeighbors(vertex, neighbors);
+            while (neighbors.hasNext()){
+                int neighbor = neighbors.next();
+                edgesScanned++;
+                if (vertex == spur && isBlocked(neighbor, blocked, numBlocked)){
+                    continue;
+                }
+                if (buffers.markVisited(neighbor)){
+                    parent[neighbor] = vertex;
+                    if (neighbor == target){
+                        buffers.recordWork(head, edgesScanned, peakFrontier);
+                        return PathFinder.readPath(parent, spur, target);
+                    }
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        buffers.recordWork(head, edgesScanned, peakFrontier);
+        return null;
+    }
+
+    private static boolean isBlocked(int vertex, int[] blocked, int numBlocked){
+        for (int i = 0; i < numBlocked; i++){
+            if (blocked[i] == vertex){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A path waiting to be returned. Ordered by length, then by when it was found; equal
+     * when the vertices are.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        private final int[] path;
+        private final long order;
+
+        Candidate(int[] path, long order){
+            this.path = path;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Candidate other){
+            if (path.length != other.path.length){
+                return Integer.compare(path.length, other.path.length);
+            }
+            return Long.compare(order, other.order);
+        }
+
+        @Override
+        public boolean equals(Object other){
+            return other instanceof Candidate && Arrays.equals(path, ((Candidate) other).path);
+        }
+
+        @Override
+        public int hashCode(){
+            return Arrays.hashCode(path);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * How a PathFinder numbers its vertices when it builds the graph. File order scatters
+ * the neighbors of a vertex over the whole graph, so a search reads its arrays almost at
+ * random; the other orders give vertices that are searched together nearby numbers, so
+ * more of each search hits in the CPU caches. Every order keeps each vertex's links in
+ * the same order, so getShortestPath() and getShortestPathBidirectional() find exactly
+ * the same paths. Path lengths are the same in every order, but searches that break ties
+ * by vertex number can return a different path of the same length:
+ * the bottom-up steps of getShortestPathDirectionOptimizing() scan vertices in number
+ * order, and getShortestPathAStar() takes equal estimates lowest number first.
+ * buildLandmarks() can also pick different landmarks, which changes the bounds it gives
+ * but never the lengths. The vertex numbers given to getArticleName() and
+ * getDistancesFrom() change too.
+ */
+public enum VertexOrder {
+    /**
+     * Vertices numbered in the order the vertex file lists them.
+     */
+    FILE,
+    /**
+     * Vertices numbered in breadth-first order, following links in both directions and
+     * starting each unvisited part of the graph from its best-linked article, as in
+     * Cuthill-McKee ordering. Linked articles end up with nearby numbers.
+     */
+    BFS,
+    /**
+     * Vertices numbered by number of links, in and out, most first. The hubs that nearly
+     * every search passes through are packed together at the front of every array.
+     */
+    DEGREE;
+
+    /**
+     * Returns the new number of every vertex of graph under this order.
+     * @param graph links of the graph in file order
+     * @param reverse the same links reversed
+     * @return array whose entry v is the new number of vertex v
+     */
+    int[] newIds(IntGraph graph, IntGraph reverse){
+        int numVertices = graph.numVertices();
+        int[] newId = new int[numVertices];
+        if (this == FILE){
+            for (int v = 0; v < numVertices; v++){
+                newId[v] = v;
+            }
+            return newId;
+        }
+        int[] byDegree = byDecreasingDegree(graph, reverse);
+        if (this == DEGREE){
+            for (int i = 0; i < numVertices; i++){
+                newId[byDegree[i]] = i;
+            }
+            return newId;
+        }
+        // BFS: newId doubles as the queue's visited marks, -1 until a vertex is numbered
+        java.util.Arrays.fill(newId, -1);
+        int[] queue = new int[numVertices];
+        NeighborCursor neighbors = new NeighborCursor();
+        int numbered = 0;
+        for (int root : byDegree){
+            if (newId[root] != -1){
+                continue;
+            }
+            int head = numbered;
+            newId[root] = numbered;
+            queue[numbered++] = root;
+            while (head < numbered){
+                int vertex = queue[head++];
+                graph.getNeighbors(vertex, neighbors);
+                while (neighbors.hasNext()){
+                    int neighbor = neighbors.next();
+                    if (newId[neighbor] == -1){
+                        newId[neighbor] = numbered;
+                        queue[numbered++] = neighbor;
+                    }
+                }
+                reverse.getNeighbors(vertex, neighbors);
+                while (neighbors.hasNext()){
+                    int neighbor = neighbors.next();
+                    if (newId[neighbor] == -1){
+                        newId[neighbor] = numbered;
+                        queue[numbered++] = neighbor;
+                    }
+                }
+            }
+        }
+        return newId;
+    }
+
+    /**
+     * Returns every vertex, sorted by in-degree plus out-degree, largest first; ties keep
+     * file order.
+     */
+    private static int[] byDecreasingDegree(IntGraph graph, IntGraph reverse){
+        int numVertices = graph.numVertices();
+        int maxDegree = 0;
+        for (int v = 0; v < numVertices; v++){
+            maxDegree = Math.max(maxDegree, graph.getDegree(v) + reverse.getDegree(v));
+        }
+        // counting sort by degree, so it stays linear in the number of vertices
+        int[] start = new int[maxDegree + 2];
+        for (int v = 0; v < numVertices; v++){
+            start[maxDegree - (graph.getDegree(v) + reverse.getDegree(v)) + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++){
+            start[d + 1] += start[d];
+        }
+        int[] sorted = new int[numVertices];
+        for (int v = 0; v < numVertices; v++){
+            sorted[start[maxDegree - (graph.getDegree(v) + reverse.getDegree(v))]++] = v;
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,444 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements the same tree as WordCountMap, with the same public
+ * methods, but stores the nodes in parallel primitive arrays indexed by node
+ * number instead of as Node objects with a HashMap of one-letter Strings.
+ * Adding a letter costs a few array slots instead of a Node, a HashMap, a
+ * String and a map entry, and words are walked one char at a time instead
+ * of being split with a regular expression, so it suits counting large texts.
+ *
+ * Node 0 is the root, which does not represent any letter. The children of
+ * a node are kept as a linked list through firstChild and nextSibling,
+ * sorted by letter, so words come out of the tree in alphabetical order.
+ * Numbers of removed nodes are reused for later ones.
+ */
+public class CompactWordCountMap{
+    private static final int ROOT = 0;
+    //marks a missing child, sibling or parent
+    private static final int NONE = -1;
+
+    //letter[n] is the letter node n represents
+    private char[] letter;
+    //count[n] is the count of the word that ends at node n
+    private int[] count;
+    //first child of node n, and the next child of the same parent
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] parent;
+    //node numbers handed out so far, including the root and removed nodes
+    private int numSlots;
+    //removed nodes waiting to be reused, linked through nextSibling
+    private int freeList;
+    //nodes in use, not counting the root
+    private int numNodes;
+
+    /**
+     * Constructs an empty CompactWordCountMap.
+     */
+    public CompactWordCountMap(){
+        letter = new char[16];
+        count = new int[16];
+        firstChild = new int[16];
+        nextSibling = new int[16];
+        parent = new int[16];
+        firstChild[ROOT] = NONE;
+        nextSibling[ROOT] = NONE;
+        parent[ROOT] = NONE;
+        numSlots = 1;
+        freeList = NONE;
+    }
+
+    /**
+     * Adds 1 to the existing count for word, or adds word to the map
+     * with a count of 1 if it was not already present.
+     */
+    public void incrementCount(String word){
+        int node = ROOT;
+        for(int i = 0; i < word.length(); i++){
+            node = findOrAddChild(node, word.charAt(i));
+        }
+        count[node]++;
+    }
+
+    /**
+     * Adds 1 to the count of the word in word[offset] to
+     * word[offset + length - 1], like incrementCount(String) but without
+     * making a String of it.
+     */
+    public void incrementCount(char[] word, int offset, int length){
+        int node = ROOT;
+        for(int i = offset; i < offset + length; i++){
+            node = findOrAddChild(node, word[i]);
+        }
+        count[node]++;
+    }
+
+    /**
+     * Removes 1 from the existing count for word. If word is not present, does
+     * nothing. If word is present and this decreases its count to 0, removes
+     * any nodes in the tree that are no longer necessary to represent the
+     * remaining words.
+     */
+    public void decrementCount(String word){
+        int node = find(word);
+        if(node == NONE || count[node] == 0){
+            return;
+        }
+        count[node]--;
+        //removes nodes from the end of the word up, while they end no word and lead to none
+        while(node != ROOT && count[node] == 0 && firstChild[node] == NONE){
+            int nodeParent = parent[node];
+            removeChild(nodeParent, node);
+            node = nodeParent;
+        }
+    }
+
+    /**
+     * Adds every count in other to this map, as if each word of other had been
+     * incremented here as many times. Walks both trees together, so no words
+     * are built as Strings.
+     */
+    public void addAll(CompactWordCountMap other){
+        if(other == this){
+            throw new IllegalArgumentException("Cannot add a map to itself");
+        }
+        count[ROOT] += other.count[ROOT];
+        //mapped[d] is the node in this tree matching other's current node at depth d
+        int[] mapped = new int[16];
+        int depth = 0;
+        int node = other.firstChild[ROOT];
+        while(node != NONE){
+            if(depth == mapped.length){
+                mapped = Arrays.copyOf(mapped, mapped.length * 2);
+            }
+            int here = findOrAddChild(depth == 0 ? ROOT : mapped[depth - 1], other.letter[node]);
+            mapped[depth] = here;
+            count[here] += other.count[node];
+            if(other.firstChild[node] != NONE){
+                node = other.firstChild[node];
+                depth++;
+            }else{
+                while(node != ROOT && other.nextSibling[node] == NONE){
+                    node = other.parent[node];
+                    depth--;
+                }
+                node = node == ROOT ? NONE : other.nextSibling[node];
+            }
+        }
+    }
+
+    /**
+     * Returns true if word is stored in this map with a count greater than 0,
+     * and false otherwise.
+     */
+    public boolean contains(String word){
+        int node = find(word);
+        return node != NONE && count[node] > 0;
+    }
+
+    /**
+     * Returns the count of word, or -1 if word is not in the map.
+     */
+    public int getCount(String word){
+        int node = find(word);
+        if(node == NONE || count[node] == 0){
+            return -1;
+        }
+        return count[node];
+    }
+
+    /**
+     * Returns a list of WordCount objects, one per word stored in this map,
+     * sorted in decreasing order by count. Words with the same count are in
+     * alphabetical order.
+     */
+    public List<WordCount> getWordCountsByCount(){
+        List<WordCount> wordCountList = new ArrayList<WordCount>();
+        //letters of the word that ends at the current node
+        char[] word = new char[16];
+        int depth = 0;
+        //walks the tree in order without a stack, using the parent links to climb back up
+        int node = firstChild[ROOT];
+        while(node != NONE){
+            if(depth == word.length){
+                word = Arrays.copyOf(word, word.length * 2);
+            }
+            word[depth] = letter[node];
+            if(count[node] > 0){
+                wordCountList.add(new WordCount(new String(word, 0, depth + 1), count[node]));
+            }
+            if(firstChild[node] != NONE){
+                node = firstChild[node];
+                depth++;
+            }else{
+                while(node != ROOT && nextSibling[node] == NONE){
+                    node = parent[node];
+                    depth--;
+                }
+                node = node == ROOT ? NONE : nextSibling[node];
+            }
+        }
+        //the sort is stable, so words with equal counts stay in alphabetical order
+        wordCountList.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+        return wordCountList;
+    }
+
+    /**
+     * Returns the k words with the highest counts, in the same order as the
+     * first k entries of getWordCountsByCount(), or every word if there are
+     * fewer than k. The tree is walked once keeping the best k words so far
+     * in a min-heap, so this takes O(V log k) time for V nodes, and only the
+     * k words returned are built as Strings.
+     */
+    public List<WordCount> getTopWords(int k){
+        if(k < 0){
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        //heap of the best words so far, worst at the top. A key is the count
+        //in the high half and the word's alphabetical rank, flipped so earlier
+        //words rank higher, in the low half; a bigger key is a better word.
+        long[] keys = new long[Math.min(k, 1024)];
+        int[] nodes = new int[keys.length];
+        int size = 0;
+        int rank = 0;
+        //walks the tree in alphabetical order, like getWordCountsByCount()
+        int node = k == 0 ? NONE : firstChild[ROOT];
+        while(node != NONE){
+            if(count[node] > 0){
+                long key = ((long) count[node] << 32) | (0xffffffffL - rank++);
+                if(size < k){
+                    if(size == keys.length){
+                        keys = Arrays.copyOf(keys, (int) Math.min(k, keys.length * 2L));
+                        nodes = Arrays.copyOf(nodes, keys.length);
+                    }
+                    //sifts the new word up from the bottom
+                    int i = size++;
+                    while(i > 0 && keys[(i - 1) / 2] > key){
+                        keys[i] = keys[(i - 1) / 2];
+                        nodes[i] = nodes[(i - 1) / 2];
+                        i = (i - 1) / 2;
+                    }
+                    keys[i] = key;
+                    nodes[i] = node;
+                }else if(key > keys[0]){
+                    siftDown(keys, nodes, size, key, node);
+                }
+            }
+            if(firstChild[node] != NONE){
+                node = firstChild[node];
+            }else{
+                while(node != ROOT && nextSibling[node] == NONE){
+                    node = parent[node];
+                }
+                node = node == ROOT ? NONE : nextSibling[node];
+            }
+        }
+        //takes the worst word off the heap each time, filling the list from the back
+        WordCount[] top = new WordCount[size];
+        for(int last = size - 1; last >= 0; last--){
+            top[last] = new WordCount(wordAt(nodes[0]), count[nodes[0]]);
+            if(last > 0){
+                siftDown(keys, nodes, last, keys[last], nodes[last]);
+            }
+        }
+        return new ArrayList<WordCount>(Arrays.asList(top));
+    }
+
+    /**
+     * Replaces the top of the min-heap keys[0..size) with key and moves it
+     * down to its place, moving nodes along with keys.
+     */
+    private static void siftDown(long[] keys, int[] nodes, int size, long key, int node){
+        int i = 0;
+        while(2 * i + 1 < size){
+            int child = 2 * i + 1;
+            if(child + 1 < size && keys[child + 1] < keys[child]){
+                child++;
+            }
+            if(keys[child] >= key){
+                break;
+            }
+            keys[i] = keys[child];
+            nodes[i] = nodes[child];
+            i = child;
+        }
+        keys[i] = key;
+        nodes[i] = node;
+    }
+
+    /**
+     * Returns the word that ends at node, read back up the parent links.
+     */
+    private String wordAt(int node){
+        int length = 0;
+        for(int n = node; n != ROOT; n = parent[n]){
+            length++;
+        }
+        char[] word = new char[length];
+        for(int n = node; n != ROOT; n = parent[n]){
+            word[--length] = letter[n];
+        }
+        return new String(word);
+    }
+
+    /**
+     * Returns a count of the total number of nodes in the tree. Like
+     * WordCountMap, a tree that represents no words has 1 node (the root),
+     * and otherwise the root is not counted.
+     */
+    public int getNodeCount(){
+        if(numNodes == 0){
+            return 1;
+        }
+        return numNodes;
+    }
+
+    /**
+     * Returns the node where word ends, or NONE if the tree has no such path.
+     */
+    private int find(String word){
+        int node = ROOT;
+        for(int i = 0; i < word.length() && node != NONE; i++){
+            node = findChild(node, word.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Returns the child of node for letter c, or NONE if it has none.
+     */
+    private int findChild(int node, char c){
+        int child = firstChild[node];
+        //children are sorted, so the search stops at the first letter past c
+        while(child != NONE && letter[child] < c){
+            child = nextSibling[child];
+        }
+        if(child != NONE && letter[child] == c){
+            return child;
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the child of node for letter c, adding it with a count of 0 if
+     * it is not there yet.
+     */
+    private int findOrAddChild(int node, char c){
+        int previous = NONE;
+        int child = firstChild[node];
+        while(child != NONE && letter[child] < c){
+            previous = child;
+            child = nextSibling[child];
+        }
+        if(child != NONE && letter[child] == c){
+            return child;
+        }
+        int newChild = newNode(c, node);
+        //links the new child in before the first sibling with a later letter
+        nextSibling[newChild] = child;
+        if(previous == NONE){
+            firstChild[node] = newChild;
+        }else{
+            nextSibling[previous] = newChild;
+        }
+        return newChild;
+    }
+
+    /**
+     * Unlinks child from the children of node and frees its number.
+     */
+    private void removeChild(int node, int child){
+        if(firstChild[node] == child){
+            firstChild[node] = nextSibling[child];
+        }else{
+            int previous = firstChild[node];
+            while(nextSibling[previous] != child){
+                previous = nextSibling[previous];
+            }
+            nextSibling[previous] = nextSibling[child];
+        }
+        nextSibling[child] = freeList;
+        freeList = child;
+        numNodes--;
+    }
+
+    /**
+     * Returns a node for letter c with no children and a count of 0, reusing
+     * a removed node's number if there is one.
+     */
+    private int newNode(char c, int nodeParent){
+        int node;
+        if(freeList != NONE){
+            node = freeList;
+            freeList = nextSibling[node];
+        }else{
+            if(numSlots == letter.length){
+                int capacity = letter.length * 2;
+                letter = Arrays.copyOf(letter, capacity);
+                count = Arrays.copyOf(count, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+            }
+            node = numSlots++;
+        }
+        letter[node] = c;
+        count[node] = 0;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        parent[node] = nodeParent;
+        numNodes++;
+        return node;
+    }
+
+    /**
+     * Tests all methods in CompactWordCountMap, with the same cases as WordCountMap.
+     */
+    public static void main(String[] args){
+        CompactWordCountMap test = new CompactWordCountMap();
+        test.incrementCount("Cathy");
+        System.out.println("This tests if the incrementCount method works. If it does, \"1\" should be printed: " + test.getCount("Cathy"));
+
+        test.decrementCount("Cathy");
+        System.out.println("This tests whether we successfully remove a existing word and its related nodes from the map. The count result should be -1, with 1 node left: " + test.getCount("Cathy") + ", " + test.getNodeCount());
+
+        test.incrementCount("Cathy");
+        test.incrementCount("Cathy");
+        test.decrementCount("Cat");
+        System.out.println("This tests whether we successfully remove a non-existing word from the map. The count result should be -1: " + test.getCount("Cat"));
+
+        test.decrementCount("Cathy");
+        System.out.println("This tests whether we successfully remove a existing word with several counts from the map. The count result should be 1: " + test.getCount("Cathy"));
+        test.incrementCount("Cathye");
+        test.decrementCount("Cathy");
+        System.out.println("This tests whether removing a word keeps the nodes another word uses. The result should be 1: " + test.getCount("Cathye"));
+
+        test.decrementCount("Cathye");
+        System.out.println("This tests whether we successfully remove the last word. The result should be -1: " + test.getCount("Cathye"));
+
+        System.out.println("This tests if the contains method would return false if this list doesn't contain the word. The result should be false: " + test.contains("a"));
+        test.incrementCount("Cathy");
+        System.out.println("This tests if the contains method would return true if this list does contain the word. The result should be true: " + test.contains("Cathy"));
+        System.out.println("This tests if the contains method would return false if this word exceed the leaf of the tree. The result should be false: " + test.contains("Cathye"));
+        System.out.println("This tests if the contains method would return false if the count of the word is 0. The result should be false: " + test.contains("C"));
+
+        test.incrementCount("Cathy");
+        test.incrementCount("Cathy");
+        test.incrementCount("Cathy");
+        test.incrementCount("Cathyee");
+        test.incrementCount("Happyyyee");
+        System.out.println("This tests whether getNodeCount gets the number of the nodes in a tree, which should return 16: " + test.getNodeCount());
+
+        test.incrementCount("Cathy");
+        test.incrementCount("Bike");
+        test.incrementCount("Bite");
+        test.incrementCount("Biae");
+        test.incrementCount("Cathyeee");
+        for (WordCount a : test.getWordCountsByCount()){
+            System.out.println(a.getWord() + ":" + a.getCount());
+        }
+    }
+}
@@ -0,0 +1,297 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class implements the same tree as WordCountMap, with the same public
+ * methods, for many threads to update at once. Nodes are added with a
+ * compare-and-set on their parent's child list and counts are LongAdders, so
+ * incrementCount() never takes a lock and threads counting different words,
+ * or even the same word, do not wait for each other.
+ *
+ * A node is fully built before the compare-and-set publishes it, and its
+ * letter and sibling link never change afterwards, so a reader walking the
+ * tree always sees whole nodes. Readers that run while words are being
+ * counted see each count as it was at some moment during the read.
+ *
+ * Nodes are never removed: a word whose count drops to 0 keeps its nodes,
+ * ready for the next time it is counted, but contains(), getCount(),
+ * getWordCountsByCount() and getNodeCount() treat it as gone.
+ */
+public class ConcurrentWordCountMap{
+    private static final AtomicReferenceFieldUpdater<Node, Node> FIRST_CHILD =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "firstChild");
+    private static final AtomicReferenceFieldUpdater<Node, LongAdder> COUNT =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, LongAdder.class, "count");
+
+    private final Node root = new Node('\0', null);
+
+    /**
+     * A letter in the tree. New children go at the front of the child list,
+     * so a node's next sibling is known when it is made and never changes.
+     */
+    private static final class Node{
+        private final char letter;
+        private final Node nextSibling;
+        private volatile Node firstChild;
+        //count of the word that ends here; made the first time that word is counted
+        private volatile LongAdder count;
+
+        Node(char letter, Node nextSibling){
+            this.letter = letter;
+            this.nextSibling = nextSibling;
+        }
+    }
+
+    /**
+     * Constructs an empty ConcurrentWordCountMap.
+     */
+    public ConcurrentWordCountMap(){
+    }
+
+    /**
+     * Adds 1 to the existing count for word, or adds word to the map with a
+     * count of 1 if it was not already present. Safe to call from any number
+     * of threads at once.
+     */
+    public void incrementCount(String word){
+        Node node = root;
+        for(int i = 0; i < word.length(); i++){
+            node = child(node, word.charAt(i), true);
+        }
+        LongAdder count = node.count;
+        if(count == null){
+            //another thread may make the counter first; then that one is used
+            COUNT.compareAndSet(node, null, new LongAdder());
+            count = node.count;
+        }
+        count.increment();
+    }
+
+    /**
+     * Removes 1 from the existing count for word. If word is not present,
+     * does nothing. Safe to call from any number of threads at once.
+     */
+    public void decrementCount(String word){
+        Node node = find(word);
+        if(node == null || node.count == null){
+            return;
+        }
+        //increments only raise the count, so once decrements of this word
+        //take turns, a positive sum cannot drop below 0
+        synchronized(node){
+            if(node.count.sum() > 0){
+                node.count.decrement();
+            }
+        }
+    }
+
+    /**
+     * Returns true if word is stored in this map with a count greater than 0,
+     * and false otherwise.
+     */
+    public boolean contains(String word){
+        return countOf(find(word)) > 0;
+    }
+
+    /**
+     * Returns the count of word, or -1 if word is not in the map.
+     */
+    public int getCount(String word){
+        long count = countOf(find(word));
+        if(count <= 0){
+            return -1;
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a list of WordCount objects, one per word stored in this map,
+     * sorted in decreasing order by count, and alphabetically among words with
+     * the same count.
+     */
+    public List<WordCount> getWordCountsByCount(){
+        List<WordCount> wordCountList = new ArrayList<WordCount>();
+        //nodes still to visit, with the words that end at them
+        Deque<Node> nodes = new ArrayDeque<Node>();
+        Deque<String> words = new ArrayDeque<String>();
+        for(Node child = root.firstChild; child != null; child = child.nextSibling){
+            nodes.push(child);
+            words.push(String.valueOf(child.letter));
+        }
+        while(!nodes.isEmpty()){
+            Node node = nodes.pop();
+            String word = words.pop();
+            long count = countOf(node);
+            if(count > 0){
+                wordCountList.add(new WordCount(word, (int) Math.min(count, Integer.MAX_VALUE)));
+            }
+            for(Node child = node.firstChild; child != null; child = child.nextSibling){
+                nodes.push(child);
+                words.push(word + child.letter);
+            }
+        }
+        wordCountList.sort((a, b) -> a.getCount() != b.getCount() ? Integer.compare(b.getCount(), a.getCount()) : a.getWord().compareTo(b.getWord()));
+        return wordCountList;
+    }
+
+    /**
+     * Returns the k words with the highest counts, in the same order as the
+     * first k entries of getWordCountsByCount(), or every word if there are
+     * fewer than k. Walks the tree once keeping the best k words so far in a
+     * min-heap, so it takes O(V log k) time instead of sorting every word.
+     */
+    public List<WordCount> getTopWords(int k){
+        if(k < 0){
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        //the worst word so far is at the head: lowest count, then last alphabetically
+        PriorityQueue<WordCount> heap = new PriorityQueue<WordCount>((a, b) -> a.getCount() != b.getCount()
+            ? Integer.compare(a.getCount(), b.getCount()) : b.getWord().compareTo(a.getWord()));
+        Deque<Node> nodes = new ArrayDeque<Node>();
+        Deque<String> words = new ArrayDeque<String>();
+        nodes.push(root);
+        words.push("");
+        while(k > 0 && !nodes.isEmpty()){
+            Node node = nodes.pop();
+            String word = words.pop();
+            long count = node == root ? 0 : countOf(node);
+            if(count > 0){
+                WordCount wordCount = new WordCount(word, (int) Math.min(count, Integer.MAX_VALUE));
+                if(heap.size() < k){
+                    heap.add(wordCount);
+                }else if(heap.comparator().compare(wordCount, heap.peek()) > 0){
+                    heap.poll();
+                    heap.add(wordCount);
+                }
+            }
+            for(Node child = node.firstChild; child != null; child = child.nextSibling){
+                nodes.push(child);
+                words.push(word + child.letter);
+            }
+        }
+        WordCount[] top = new WordCount[heap.size()];
+        for(int i = top.length - 1; i >= 0; i--){
+            top[i] = heap.poll();
+        }
+        return new ArrayList<WordCount>(Arrays.asList(top));
+    }
+
+    /**
+     * Returns a count of the nodes needed to represent the words with a count
+     * above 0. Like WordCountMap, a tree that represents no words has 1 node
+     * (the root), and otherwise the root is not counted.
+     */
+    public int getNodeCount(){
+        //visits children before parents, so each node knows if a word runs through it
+        List<Node> order = new ArrayList<Node>();
+        Deque<Node> stack = new ArrayDeque<Node>();
+        stack.push(root);
+        while(!stack.isEmpty()){
+            Node node = stack.pop();
+            order.add(node);
+            for(Node child = node.firstChild; child != null; child = child.nextSibling){
+                stack.push(child);
+            }
+        }
+        Set<Node> needed = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        int nodeCount = 0;
+        for(int i = order.size() - 1; i > 0; i--){
+            Node node = order.get(i);
+            boolean isNeeded = countOf(node) > 0;
+            for(Node child = node.firstChild; child != null && !isNeeded; child = child.nextSibling){
+                isNeeded = needed.contains(child);
+            }
+            if(isNeeded){
+                needed.add(node);
+                nodeCount++;
+            }
+        }
+        if(nodeCount == 0){
+            return 1;
+        }
+        return nodeCount;
+    }
+
+    /**
+     * Returns the node where word ends, or null if the tree has no such path.
+     */
+    private Node find(String word){
+        Node node = root;
+        for(int i = 0; i < word.length() && node != null; i++){
+            node = child(node, word.charAt(i), false);
+        }
+        return node;
+    }
+
+    private static long countOf(Node node){
+        if(node == null){
+            return 0;
+        }
+        LongAdder count = node.count;
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Returns the child of node for letter c. If there is none, adds it when
+     * create is true and returns null otherwise.
+     */
+    private static Node child(Node node, char c, boolean create){
+        Node head = node.firstChild;
+        //children from scannedTo on were already checked by an earlier try
+        Node scannedTo = null;
+        while(true){
+            for(Node child = head; child != scannedTo; child = child.nextSibling){
+                if(child.letter == c){
+                    return child;
+                }
+            }
+            if(!create){
+                return null;
+            }
+            Node newChild = new Node(c, head);
+            if(FIRST_CHILD.compareAndSet(node, head, newChild)){
+                return newChild;
+            }
+            //another thread added a child first; only the children added since need checking
+            scannedTo = head;
+            head = node.firstChild;
+        }
+    }
+
+    /**
+     * Tests ConcurrentWordCountMap by counting the same words from several threads at once.
+     */
+    public static void main(String[] args) throws InterruptedException{
+        ConcurrentWordCountMap test = new ConcurrentWordCountMap();
+        String[] words = {"cathy", "cat", "cathye", "happy", "bike", "bite"};
+        Thread[] threads = new Thread[8];
+        for(int t = 0; t < threads.length; t++){
+            threads[t] = new Thread(() -> {
+                for(int i = 0; i < 100000; i++){
+                    test.incrementCount(words[i % words.length]);
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        System.out.println("This tests counting from 8 threads at once. The count of \"cat\" should be 133336: " + test.getCount("cat"));
+        test.decrementCount("bike");
+        System.out.println("This tests decrementCount. The count of \"bike\" should be 133327: " + test.getCount("bike"));
+        System.out.println("This tests contains on a prefix that is not a word. The result should be false: " + test.contains("ca"));
+        System.out.println("This tests getNodeCount, which should return 17: " + test.getNodeCount());
+        for(WordCount a : test.getWordCountsByCount()){
+            System.out.println(a.getWord() + ":" + a.getCount());
+        }
+    }
+}
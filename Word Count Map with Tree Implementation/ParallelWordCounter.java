@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class counts the words of a file on all cores. The file is split into
+ * chunks of about CHUNK_BYTES, each chunk is counted into its own
+ * CompactWordCountMap on a fork-join pool, and the partial maps are merged
+ * pairwise as the tasks finish. Every chunk is counted with a WordTokenizer,
+ * the same code WordCounter.countText() runs over a whole text in one
+ * thread, so the counts match the sequential run exactly.
+ *
+ * Chunks are cut just after a '\n', so no line, and so no word, is split
+ * between two chunks. The file is read in the platform's default charset,
+ * like a Scanner does; that charset must write '\n' as the single byte 10,
+ * which holds for UTF-8, ASCII and the ISO-8859 charsets.
+ */
+public class ParallelWordCounter{
+    //chunks are large enough that counting dwarfs the cost of a task and a merge
+    private static final int CHUNK_BYTES = 8 << 20;
+    //bytes read at a time while looking for the end of a line
+    private static final int SCAN_BYTES = 1 << 16;
+
+    /**
+     * Returns the counts of the words in the file fileName, skipping the words
+     * in stopWords.
+     */
+    public static CompactWordCountMap countFile(String fileName, StopWordSet stopWords) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)){
+            long size = channel.size();
+            int numChunks = (int) Math.max(1, (size + CHUNK_BYTES - 1) / CHUNK_BYTES);
+            try{
+                return ForkJoinPool.commonPool().invoke(new CountTask(channel, size, stopWords, 0, numChunks));
+            }catch(UncheckedIOException e){
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Counts the chunks first to last - 1, by splitting them in half until one
+     * is left and merging the two halves' counts.
+     */
+    private static class CountTask extends RecursiveTask<CompactWordCountMap>{
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final StopWordSet stopWords;
+        private final int first;
+        private final int last;
+
+        CountTask(FileChannel channel, long size, StopWordSet stopWords, int first, int last){
+            this.channel = channel;
+            this.size = size;
+            this.stopWords = stopWords;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected CompactWordCountMap compute(){
+            if(last - first == 1){
+                try{
+                    return countChunk();
+                }catch(IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = (first + last) >>> 1;
+            CountTask left = new CountTask(channel, size, stopWords, first, middle);
+            left.fork();
+            CompactWordCountMap counts = new CountTask(channel, size, stopWords, middle, last).compute();
+            counts.addAll(left.join());
+            return counts;
+        }
+
+        /**
+         * Counts the lines that start in this task's one chunk.
+         */
+        private CompactWordCountMap countChunk() throws IOException {
+            long start = lineStart(first * (long) CHUNK_BYTES);
+            long end = lineStart(Math.min(size, (first + 1) * (long) CHUNK_BYTES));
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            //positional reads, so every task can read the shared channel at once
+            while(buffer.hasRemaining()){
+                if(channel.read(buffer, start + buffer.position()) < 0){
+                    throw new IOException("File shrank while it was being counted");
+                }
+            }
+            CompactWordCountMap counts = new CompactWordCountMap();
+            buffer.flip();
+            //decodes straight into chars the tokenizer scans in place, with no String of the chunk
+            new WordTokenizer(stopWords, counts).countWords(Charset.defaultCharset().decode(buffer));
+            return counts;
+        }
+
+        /**
+         * Returns the start of the first line that starts at or after position:
+         * position itself if it is 0 or follows a '\n', otherwise just past the
+         * next '\n', or the end of the file if there is none.
+         */
+        private long lineStart(long position) throws IOException {
+            if(position == 0 || position >= size){
+                return Math.min(position, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BYTES);
+            for(long scan = position - 1; scan < size; scan += buffer.limit()){
+                buffer.clear();
+                channel.read(buffer, scan);
+                buffer.flip();
+                for(int i = 0; i < buffer.limit(); i++){
+                    if(buffer.get(i) == '\n'){
+                        return scan + i + 1;
+                    }
+                }
+                if(buffer.limit() == 0){
+                    break;
+                }
+            }
+            return size;
+        }
+    }
+}
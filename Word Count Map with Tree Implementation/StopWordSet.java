@@ -0,0 +1,136 @@
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * This class stores the stop words in an open-addressing hash table, built
+ * once, so checking a word takes one hash and usually one comparison instead
+ * of comparing it with every stop word in a list. Words are checked as a
+ * range of a char array, the way WordTokenizer holds them, so no String is
+ * made to check a word.
+ *
+ * The letters of all stop words are kept end to end in one char array, and
+ * each slot of the table holds the number of a stop word, or EMPTY.
+ */
+public class StopWordSet{
+    private static final int EMPTY = -1;
+
+    //the letters of stop word w are letters[start[w]] to letters[start[w + 1] - 1]
+    private final char[] letters;
+    private final int[] start;
+    private final int[] hash;
+    //stop word numbers; the table length is a power of 2 at least twice the number of stop words
+    private final int[] table;
+    private int numWords;
+
+    /**
+     * Constructs a set of the words in stopWords. Repeated words are stored once.
+     */
+    public StopWordSet(Collection<String> stopWords){
+        int numLetters = 0;
+        for(String stopWord : stopWords){
+            numLetters += stopWord.length();
+        }
+        letters = new char[numLetters];
+        start = new int[stopWords.size() + 1];
+        hash = new int[stopWords.size()];
+        int tableLength = 2;
+        while(tableLength < 2 * stopWords.size()){
+            tableLength *= 2;
+        }
+        table = new int[tableLength];
+        Arrays.fill(table, EMPTY);
+        for(String stopWord : stopWords){
+            add(stopWord);
+        }
+    }
+
+    /**
+     * Returns the number of different stop words.
+     */
+    public int size(){
+        return numWords;
+    }
+
+    /**
+     * Returns true if word is a stop word.
+     */
+    public boolean contains(String word){
+        return contains(word.toCharArray(), 0, word.length());
+    }
+
+    /**
+     * Returns true if chars[offset] to chars[offset + length - 1] spell a stop word.
+     */
+    public boolean contains(char[] chars, int offset, int length){
+        int h = hash(chars, offset, length);
+        for(int slot = h & (table.length - 1); table[slot] != EMPTY; slot = (slot + 1) & (table.length - 1)){
+            int w = table[slot];
+            if(hash[w] == h && matches(w, chars, offset, length)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds word unless it is already in the set.
+     */
+    private void add(String word){
+        int offset = start[numWords];
+        word.getChars(0, word.length(), letters, offset);
+        int h = hash(letters, offset, word.length());
+        int slot = h & (table.length - 1);
+        while(table[slot] != EMPTY){
+            int w = table[slot];
+            if(hash[w] == h && matches(w, letters, offset, word.length())){
+                return;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        table[slot] = numWords;
+        hash[numWords] = h;
+        start[numWords + 1] = offset + word.length();
+        numWords++;
+    }
+
+    /**
+     * Returns true if stop word w is chars[offset] to chars[offset + length - 1].
+     */
+    private boolean matches(int w, char[] chars, int offset, int length){
+        if(start[w + 1] - start[w] != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(letters[start[w] + i] != chars[offset + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns an FNV-1a hash of the chars, with the high bits mixed into the
+     * low ones the table index is taken from.
+     */
+    private static int hash(char[] chars, int offset, int length){
+        int h = 0x811c9dc5;
+        for(int i = offset; i < offset + length; i++){
+            h = (h ^ chars[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Tests StopWordSet on a few words.
+     */
+    public static void main(String[] args){
+        StopWordSet test = new StopWordSet(Arrays.asList("the", "a", "and", "the", ""));
+        System.out.println("This tests size with a repeated word. The size should be 4: " + test.size());
+        System.out.println("This tests contains(\"the\"). The result should be true: " + test.contains("the"));
+        System.out.println("This tests contains(\"then\"). The result should be false: " + test.contains("then"));
+        char[] text = "brand".toCharArray();
+        System.out.println("This tests contains on the \"and\" inside \"brand\". The result should be true: " + test.contains(text, 2, 3));
+        System.out.println("This tests contains on the \"ran\" inside \"brand\". The result should be false: " + test.contains(text, 1, 3));
+        System.out.println("This tests contains on an empty range. The result should be true: " + test.contains(text, 0, 0));
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.PriorityQueue;
 import java.lang.String;
 
 /**
@@ -238,16 +239,81 @@ public class WordCountMap{
         else{
             wordCountList = this.getWordCountHelper(word, root, wordCountList);
         }
-        //Sort the wordCountList using insertion sort.
-        for(int i = 1; i < wordCountList.size(); i++){
-            WordCount itemToInsert = wordCountList.get(i);
-            int j = i - 1;
-            for(; j >= 0 && itemToInsert.getCount() > wordCountList.get(j).getCount(); j--){
+        //Sort the wordCountList by count. The sort is stable, like the insertion sort it replaces, so words with the same count keep the order they were found in, but it takes O(n log n) instead of O(n^2) time.
+        wordCountList.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+        return wordCountList;
+    }
+
+    /**
+     * Returns the k words with the highest counts, in the same order as the
+     * first k entries of getWordCountsByCount(), or every word if there are
+     * fewer than k. Walks the tree once keeping the best k words so far in a
+     * min-heap, so it takes O(n log k) time instead of sorting every word.
+     */
+    public List<WordCount> getTopWords(int k){
+        if(k < 0){
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        //The worst word so far is at the head: lowest count, and among equal counts the one found last.
+        PriorityQueue<RankedWord> heap = new PriorityQueue<RankedWord>((a, b) -> a.wordCount.getCount() != b.wordCount.getCount()
+            ? Integer.compare(a.wordCount.getCount(), b.wordCount.getCount()) : Integer.compare(b.rank, a.rank));
+        if(k > 0){
+            getTopWordsHelper("", root, heap, k, new int[1]);
+        }
+        WordCount[] top = new WordCount[heap.size()];
+        for(int i = top.length - 1; i >= 0; i--){
+            top[i] = heap.poll().wordCount;
+        }
+        return new ArrayList<WordCount>(Arrays.asList(top));
+    }
+
+    /**
+     * A word with the position it was found in, to break ties between equal counts.
+     */
+    private static class RankedWord{
+        private final WordCount wordCount;
+        private final int rank;
+
+        RankedWord(WordCount wordCount, int rank){
+            this.wordCount = wordCount;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * Helper method of getTopWords(). Finds words in the same order as getWordCountHelper(), counting them in nextRank[0].
+     */
+    private void getTopWordsHelper(String word, Node node, PriorityQueue<RankedWord> heap, int k, int[] nextRank){
+        //If reaching the leaf, offer the word that ends here.
+        if(node.children.isEmpty()){
+            if(word.length() != 0){
+                offerWord(new WordCount(word, node.count), heap, k, nextRank);
             }
-            wordCountList.remove(i);
-            wordCountList.add(j + 1, itemToInsert);
+            return;
+        }
+        for(Node referenceNode : node.children.values()){
+            String localWord = word + referenceNode.letter;
+            //A word that ends at a node with children is found before the words below it.
+            if(referenceNode.count != 0 && !referenceNode.children.isEmpty()){
+                offerWord(new WordCount(localWord, referenceNode.count), heap, k, nextRank);
+            }
+            getTopWordsHelper(localWord, referenceNode, heap, k, nextRank);
+        }
+    }
+
+    /**
+     * Adds word to the heap if it is among the best k found so far.
+     */
+    private static void offerWord(WordCount word, PriorityQueue<RankedWord> heap, int k, int[] nextRank){
+        RankedWord ranked = new RankedWord(word, nextRank[0]++);
+        if(heap.size() < k){
+            heap.add(ranked);
+        }
+        //A word found later only beats the worst one with a strictly higher count.
+        else if(word.getCount() > heap.peek().wordCount.getCount()){
+            heap.poll();
+            heap.add(ranked);
         }
-        return wordCountList;
     }
     
     /**
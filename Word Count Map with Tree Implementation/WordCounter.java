@@ -4,12 +4,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.lang.Character;
 import java.io.PrintWriter;
 import java.lang.Integer;
 
 /**
- * This class uses WordCountMap object to store the words in an
+ * This class uses a CompactWordCountMap object to store the words in an
  * input file and conduct operations according to the users' demand.
  * 
  * If the user input only the file name, prints all words and counts
@@ -23,9 +25,18 @@ import java.lang.Integer;
  */
 public class WordCounter{
     
+    /**
+     * Counts the words of text into map, skipping stop words. Lines end where
+     * a Scanner's nextLine() would end them, and every word is "normalized":
+     * punctuation attached at the beginning or at the end is removed and it is
+     * made lower case. This avoids having multiple counts.
+     */
+    public static void countText(String text, StopWordSet stopWords, CompactWordCountMap map){
+        new WordTokenizer(stopWords, map).countWords(text.toCharArray(), 0, text.length());
+    }
+    
     public static void main (String[] args){
         //loads StopWords.txt files and add to stopWord list
-        WordCountMap map = new WordCountMap();
         File stopWordFile = new File("StopWords.txt");
         List<String> stopWordList = new ArrayList<String>();
         try{
@@ -40,48 +51,29 @@ public class WordCounter{
         	System.err.println("File not found!");
         }
         
-        /**loads all words in the input text file, and "normalize" them:
-        remove any punctuation that's attached to them at the beginning 
-        or at the end, and make them lower case. This avoids having multiple 
-        counts.
-        */
-        File file = new File(args[0]);
-        Scanner scanner;
+        StopWordSet stopWords = new StopWordSet(stopWordList);
+        
+        //counts the words of the input file, splitting the file among all cores
+        CompactWordCountMap map = new CompactWordCountMap();
         try{
-        	scanner = new Scanner(file);
-        	while(scanner.hasNextLine()){
-            	String eachLine = scanner.nextLine();
-            	String[] words = eachLine.split(" ");
-            	for(int i = 0; i < words.length; i ++){
-            		words[i] = words[i].toLowerCase();
-                    while(words[i].length() != 0 && !Character.isLetterOrDigit(words[i].charAt(0))){
-                        words[i] = words[i].substring(1);
-                    }
-                    while(words[i].length() != 0 && !Character.isLetterOrDigit(words[i].charAt(words[i].length() - 1))){
-                        words[i] = words[i].substring(0, words[i].length() - 1);
-                    }
-                }
-            	for (String word : words){
-                	if (!stopWordList.contains(word) && word != "" && word != " "){
-                    	map.incrementCount(word);
-                	}
-            	}
-            }
-            scanner.close();
-        }catch(FileNotFoundException e){
-        	System.err.println("File not found!");
+            map = ParallelWordCounter.countFile(args[0], stopWords);
+        }catch(NoSuchFileException e){
+            System.err.println("File not found!");
+        }catch(IOException e){
+            System.err.println(e);
         }
         
         //Prints all words out if only one argument taken from the user. Otherwise, output the HTML file that draws a wordCloud.
-        List<WordCount> wordsAndCount = map.getWordCountsByCount();
         if(args.length == 1){
+            List<WordCount> wordsAndCount = map.getWordCountsByCount();
             for (WordCount a : wordsAndCount){
                 System.out.println(a.getWord() + ":" + a.getCount()); 
             }
         }else if(args.length == 3){
             List<WordCount> wordInCloud = new ArrayList<WordCount>();
             PrintWriter toFile = null;
-            wordInCloud = map.getWordCountsByCount().subList(0, Integer.parseInt(args[1]));
+            //only the words in the cloud are needed, so the rest are never sorted
+            wordInCloud = map.getTopWords(Integer.parseInt(args[1]));
             
             try{
                 toFile = new PrintWriter(args[2]);
@@ -0,0 +1,119 @@
+import java.nio.CharBuffer;
+import java.util.Locale;
+
+/**
+ * This class splits text into words and counts them into a
+ * CompactWordCountMap without making a String per word. Words are separated
+ * by spaces and line ends, made lower case and stripped of the punctuation
+ * attached at their beginning or end, all inside one reused char array, and
+ * the letters left are handed to the map as a range of that array.
+ *
+ * The words counted are exactly the ones WordCounter got from splitting each
+ * line on " " and calling toLowerCase() and substring(). Lower-casing one
+ * char at a time gives the same result as String.toLowerCase() except for a
+ * few letters (dotted capital I, capital sigma, surrogate pairs) and in
+ * Turkish, Azerbaijani and Lithuanian locales, so words with those fall back
+ * to the String methods.
+ */
+public class WordTokenizer{
+    private final StopWordSet stopWords;
+    private final CompactWordCountMap map;
+    //false when the default locale lower-cases some letters differently from Character.toLowerCase()
+    private final boolean charByCharLowerCase;
+    //the current word, lower case
+    private char[] word = new char[32];
+
+    /**
+     * Constructs a tokenizer that counts words into map, skipping the words
+     * in stopWords.
+     */
+    public WordTokenizer(StopWordSet stopWords, CompactWordCountMap map){
+        this.stopWords = stopWords;
+        this.map = map;
+        String language = Locale.getDefault().getLanguage();
+        this.charByCharLowerCase = !(language.equals("tr") || language.equals("az") || language.equals("lt"));
+    }
+
+    /**
+     * Counts the words in the remaining chars of text, and moves its position
+     * to its limit.
+     */
+    public void countWords(CharBuffer text){
+        if(text.hasArray()){
+            countWords(text.array(), text.arrayOffset() + text.position(), text.arrayOffset() + text.limit());
+        }else{
+            char[] copy = new char[text.remaining()];
+            text.get(copy);
+            countWords(copy, 0, copy.length);
+        }
+        text.position(text.limit());
+    }
+
+    /**
+     * Counts the words in text[start] to text[end - 1].
+     */
+    public void countWords(char[] text, int start, int end){
+        int wordStart = start;
+        for(int i = start; i < end; i++){
+            char c = text[i];
+            //spaces split words, and so do the line ends a Scanner's nextLine() stops at
+            if(c == ' ' || c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085'){
+                if(i > wordStart){
+                    countWord(text, wordStart, i);
+                }
+                wordStart = i + 1;
+            }
+        }
+        if(end > wordStart){
+            countWord(text, wordStart, end);
+        }
+    }
+
+    /**
+     * Normalizes the word text[start] to text[end - 1] and counts it unless
+     * nothing is left of it or it is a stop word.
+     */
+    private void countWord(char[] text, int start, int end){
+        int length = end - start;
+        if(length > word.length){
+            word = new char[Math.max(length, word.length * 2)];
+        }
+        for(int i = 0; i < length; i++){
+            char c = text[start + i];
+            if(!charByCharLowerCase || c == '\u0130' || c == '\u03A3' || Character.isSurrogate(c)){
+                countWordSlowly(new String(text, start, length));
+                return;
+            }
+            word[i] = Character.toLowerCase(c);
+        }
+        //removes punctuation at the beginning and at the end
+        int first = 0;
+        int last = length;
+        while(first < last && !Character.isLetterOrDigit(word[first])){
+            first++;
+        }
+        while(last > first && !Character.isLetterOrDigit(word[last - 1])){
+            last--;
+        }
+        if(first < last && !stopWords.contains(word, first, last - first)){
+            map.incrementCount(word, first, last - first);
+        }
+    }
+
+    /**
+     * Normalizes and counts a word with the String methods, for the words
+     * that cannot be lower-cased one char at a time.
+     */
+    private void countWordSlowly(String text){
+        String normalized = text.toLowerCase();
+        while(normalized.length() != 0 && !Character.isLetterOrDigit(normalized.charAt(0))){
+            normalized = normalized.substring(1);
+        }
+        while(normalized.length() != 0 && !Character.isLetterOrDigit(normalized.charAt(normalized.length() - 1))){
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if(!normalized.isEmpty() && !stopWords.contains(normalized)){
+            map.incrementCount(normalized);
+        }
+    }
+}